@@ -0,0 +1,161 @@
+package ru.batorov.library.catalog;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Catalog snapshot saved on local disk. The file is memory-mapped when read,
+ * so the snapshot is restored without querying the database.
+ * <p>
+ * Layout: magic, format version, watermark (epoch second and nano), number
+ * of rows, number of strings, columns ids, release years, titles, authors,
+ * owners and then the dictionary strings as length-prefixed UTF-8.
+ */
+public class CatalogFile {
+	private static final int MAGIC = 0x4C424354;
+	// must be increased on any change of the layout, files of other versions are ignored
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+	private final Path path;
+
+	/**
+	 * @param path file of the snapshot, it doesn't have to exist.
+	 */
+	public CatalogFile(Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * Save the snapshot. The previous file is replaced atomically, so readers
+	 * see either the old or the new snapshot.
+	 *
+	 * @param snapshot  must not be {@literal null}.
+	 * @param watermark books changed after it may be missing in the snapshot,
+	 *                  must not be {@literal null}.
+	 * @throws IOException if the file can't be written.
+	 */
+	public void write(CatalogSnapshot snapshot, LocalDateTime watermark) throws IOException {
+		String[] strings = snapshot.strings();
+		byte[][] encoded = new byte[strings.length][];
+		long size = HEADER_SIZE + 5L * 4 * snapshot.size();
+		for (int i = 0; i < strings.length; i++) {
+			encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+			size += 4 + encoded[i].length;
+		}
+		if (path.toAbsolutePath().getParent() != null)
+			Files.createDirectories(path.toAbsolutePath().getParent());
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(FORMAT_VERSION);
+			buffer.putLong(watermark.toEpochSecond(ZoneOffset.UTC));
+			buffer.putInt(watermark.getNano());
+			buffer.putInt(snapshot.size());
+			buffer.putInt(strings.length);
+			for (int[] column : new int[][] { snapshot.ids(), snapshot.releaseYears(), snapshot.titles(),
+					snapshot.authors(), snapshot.owners() })
+				for (int value : column)
+					buffer.putInt(value);
+			for (byte[] string : encoded) {
+				buffer.putInt(string.length);
+				buffer.put(string);
+			}
+			buffer.force();
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Read the saved snapshot.
+	 *
+	 * @return saved snapshot or {@literal null} if there is no file or it was
+	 *         written in another format.
+	 * @throws IOException if the file can't be read or is damaged.
+	 */
+	public Saved read() throws IOException {
+		if (!Files.isRegularFile(path))
+			return null;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException("Catalog snapshot " + path + " is truncated");
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+				return null;
+			LocalDateTime watermark = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+			int rows = buffer.getInt();
+			int stringCount = buffer.getInt();
+			if (rows < 0 || stringCount < 0 || 5L * 4 * rows + 4L * stringCount > buffer.remaining())
+				throw new IOException("Catalog snapshot " + path + " is damaged");
+			int[][] columns = new int[5][rows];
+			String[] strings = new String[stringCount];
+			IntBuffer ints = buffer.asIntBuffer();
+			for (int[] column : columns)
+				ints.get(column);
+			buffer.position(buffer.position() + 4 * ints.position());
+			for (int i = 0; i < strings.length; i++) {
+				int length = buffer.getInt();
+				if (length < 0 || length > buffer.remaining())
+					throw new IOException("Catalog snapshot " + path + " is damaged");
+				byte[] string = new byte[length];
+				buffer.get(string);
+				strings[i] = new String(string, StandardCharsets.UTF_8);
+			}
+			if (!isValid(columns[0], columns[2], columns[3], strings.length))
+				throw new IOException("Catalog snapshot " + path + " is damaged");
+			return new Saved(CatalogSnapshot.ofColumns(columns[0], columns[1], columns[2], columns[3], columns[4],
+					strings), watermark);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Catalog snapshot " + path + " is damaged", e);
+		}
+	}
+
+	private static boolean isValid(int[] ids, int[] titles, int[] authors, int stringCount) {
+		for (int row = 0; row < ids.length; row++) {
+			if (row > 0 && ids[row - 1] >= ids[row])
+				return false;
+			if (titles[row] < 0 || titles[row] >= stringCount || authors[row] < 0 || authors[row] >= stringCount)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return path.toString();
+	}
+
+	public static class Saved {
+		private final CatalogSnapshot snapshot;
+		private final LocalDateTime watermark;
+
+		private Saved(CatalogSnapshot snapshot, LocalDateTime watermark) {
+			this.snapshot = snapshot;
+			this.watermark = watermark;
+		}
+
+		public CatalogSnapshot getSnapshot() {
+			return snapshot;
+		}
+
+		/**
+		 * Return time after which books have to be reloaded from the database.
+		 */
+		public LocalDateTime getWatermark() {
+			return watermark;
+		}
+	}
+}
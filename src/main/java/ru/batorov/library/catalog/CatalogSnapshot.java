@@ -0,0 +1,566 @@
+package ru.batorov.library.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.util.BookFilter;
+
+/**
+ * Immutable column-oriented copy of the catalog. Rows are ordered by id,
+ * titles and authors are dictionary encoded. Changes return a new snapshot
+ * that shares the dictionary with the old one.
+ * <p>
+ * Ids of available books and ids of books of every release year are kept in
+ * compressed bitmaps, so filtered books are listed, counted and skipped
+ * without scanning the books that don't match. Rows are read straight from
+ * the columns into the objects of the caller.
+ */
+public final class CatalogSnapshot {
+	public static final int NO_OWNER = -1;
+
+	/**
+	 * Builds an object of the caller from the columns of a row.
+	 */
+	@FunctionalInterface
+	public interface RowMapper<T> {
+		T map(int id, String title, String author, int releaseYear, Integer ownerId);
+	}
+
+	private final int[] ids;
+	private final int[] releaseYears;
+	private final int[] titles;
+	private final int[] authors;
+	private final int[] owners;
+	// row numbers ordered by (releaseYear, id)
+	private final int[] byReleaseYear;
+	// ids of books without owner
+	private final RoaringBitmap available;
+	// distinct release years in ascending order and ids of books released in each of them
+	private final int[] years;
+	private final RoaringBitmap[] idsByYear;
+	private final Dictionary dictionary;
+
+	private CatalogSnapshot(int[] ids, int[] releaseYears, int[] titles, int[] authors, int[] owners,
+			int[] byReleaseYear, RoaringBitmap available, int[] years, RoaringBitmap[] idsByYear,
+			Dictionary dictionary) {
+		this.ids = ids;
+		this.releaseYears = releaseYears;
+		this.titles = titles;
+		this.authors = authors;
+		this.owners = owners;
+		this.byReleaseYear = byReleaseYear;
+		this.available = available;
+		this.years = years;
+		this.idsByYear = idsByYear;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Build snapshot of the given books.
+	 *
+	 * @param books must not be {@literal null} and contain distinct ids.
+	 * @return snapshot of the given books.
+	 */
+	public static CatalogSnapshot of(Collection<BookSnapshot> books) {
+		List<BookSnapshot> sorted = new ArrayList<>(books);
+		sorted.sort(Comparator.comparing(BookSnapshot::getId));
+		int size = sorted.size();
+		Dictionary dictionary = new Dictionary();
+		int[] ids = new int[size];
+		int[] releaseYears = new int[size];
+		int[] titles = new int[size];
+		int[] authors = new int[size];
+		int[] owners = new int[size];
+		for (int row = 0; row < size; row++) {
+			BookSnapshot book = sorted.get(row);
+			ids[row] = book.getId();
+			releaseYears[row] = book.getReleaseYear();
+			titles[row] = dictionary.encode(book.getTitle());
+			authors[row] = dictionary.encode(book.getAuthor());
+			owners[row] = book.getOwnerId() == null ? NO_OWNER : book.getOwnerId();
+		}
+		return ofColumns(ids, releaseYears, titles, authors, owners, dictionary);
+	}
+
+	/**
+	 * Build snapshot of the given columns, rows must be ordered by id and the
+	 * strings indexed by their codes.
+	 */
+	static CatalogSnapshot ofColumns(int[] ids, int[] releaseYears, int[] titles, int[] authors, int[] owners,
+			String[] strings) {
+		return ofColumns(ids, releaseYears, titles, authors, owners, new Dictionary(strings));
+	}
+
+	private static CatalogSnapshot ofColumns(int[] ids, int[] releaseYears, int[] titles, int[] authors,
+			int[] owners, Dictionary dictionary) {
+		CatalogSnapshot snapshot = new CatalogSnapshot(ids, releaseYears, titles, authors, owners, null, null,
+				null, null, dictionary);
+		Integer[] order = new Integer[ids.length];
+		RoaringBitmap available = new RoaringBitmap();
+		for (int row = 0; row < ids.length; row++) {
+			order[row] = row;
+			if (owners[row] == NO_OWNER)
+				available.add(ids[row]);
+		}
+		Arrays.sort(order, (first, second) -> snapshot.compareByReleaseYear(first, second));
+		int[] byReleaseYear = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+		available.runOptimize();
+		List<Integer> years = new ArrayList<>();
+		List<RoaringBitmap> idsByYear = new ArrayList<>();
+		for (int row : byReleaseYear) {
+			if (years.isEmpty() || years.get(years.size() - 1) != releaseYears[row]) {
+				years.add(releaseYears[row]);
+				idsByYear.add(new RoaringBitmap());
+			}
+			idsByYear.get(idsByYear.size() - 1).add(ids[row]);
+		}
+		idsByYear.forEach(RoaringBitmap::runOptimize);
+		return new CatalogSnapshot(ids, releaseYears, titles, authors, owners, byReleaseYear, available,
+				years.stream().mapToInt(Integer::intValue).toArray(), idsByYear.toArray(new RoaringBitmap[0]),
+				dictionary);
+	}
+
+	public static CatalogSnapshot empty() {
+		return of(List.of());
+	}
+
+	/**
+	 * Return snapshot with the given book added or replaced.
+	 *
+	 * @param book must not be {@literal null}.
+	 * @return new snapshot.
+	 */
+	public CatalogSnapshot with(BookSnapshot book) {
+		CatalogSnapshot result = without(book.getId());
+		int row = -Arrays.binarySearch(result.ids, book.getId()) - 1;
+		int size = result.size() + 1;
+		int owner = book.getOwnerId() == null ? NO_OWNER : book.getOwnerId();
+		int position = result.upperBound(true, book.getReleaseYear(), book.getId());
+		int[] newByReleaseYear = new int[size];
+		for (int i = 0; i < result.byReleaseYear.length; i++) {
+			int value = result.byReleaseYear[i];
+			newByReleaseYear[i < position ? i : i + 1] = value >= row ? value + 1 : value;
+		}
+		newByReleaseYear[position] = row;
+		RoaringBitmap newAvailable = result.available.clone();
+		if (owner == NO_OWNER)
+			newAvailable.add(book.getId());
+		int[] newYears = result.years;
+		RoaringBitmap[] newIdsByYear;
+		int year = Arrays.binarySearch(result.years, book.getReleaseYear());
+		if (year >= 0) {
+			newIdsByYear = result.idsByYear.clone();
+			newIdsByYear[year] = newIdsByYear[year].clone();
+		} else {
+			year = -year - 1;
+			newYears = insert(result.years, year, book.getReleaseYear());
+			newIdsByYear = new RoaringBitmap[newYears.length];
+			System.arraycopy(result.idsByYear, 0, newIdsByYear, 0, year);
+			System.arraycopy(result.idsByYear, year, newIdsByYear, year + 1, result.idsByYear.length - year);
+			newIdsByYear[year] = new RoaringBitmap();
+		}
+		newIdsByYear[year].add(book.getId());
+		Dictionary dictionary = result.dictionary.isWasteful(size) ? result.dictionary.compact() : result.dictionary;
+		return new CatalogSnapshot(
+				insert(result.ids, row, book.getId()),
+				insert(result.releaseYears, row, book.getReleaseYear()),
+				insert(dictionary.recode(result.titles, result.dictionary), row, dictionary.encode(book.getTitle())),
+				insert(dictionary.recode(result.authors, result.dictionary), row, dictionary.encode(book.getAuthor())),
+				insert(result.owners, row, owner),
+				newByReleaseYear,
+				newAvailable,
+				newYears,
+				newIdsByYear,
+				dictionary);
+	}
+
+	/**
+	 * Return snapshot without the book with the given id. If there is no such
+	 * book this snapshot is returned.
+	 *
+	 * @param bookId must not be {@literal null}.
+	 * @return new snapshot.
+	 */
+	public CatalogSnapshot without(Integer bookId) {
+		int row = Arrays.binarySearch(ids, bookId);
+		if (row < 0)
+			return this;
+		int[] newByReleaseYear = new int[byReleaseYear.length - 1];
+		int i = 0;
+		for (int value : byReleaseYear)
+			if (value != row)
+				newByReleaseYear[i++] = value > row ? value - 1 : value;
+		RoaringBitmap newAvailable = available.clone();
+		newAvailable.remove(bookId);
+		int[] newYears = years;
+		RoaringBitmap[] newIdsByYear;
+		int year = Arrays.binarySearch(years, releaseYears[row]);
+		if (idsByYear[year].getCardinality() == 1) {
+			newYears = remove(years, year);
+			newIdsByYear = new RoaringBitmap[newYears.length];
+			System.arraycopy(idsByYear, 0, newIdsByYear, 0, year);
+			System.arraycopy(idsByYear, year + 1, newIdsByYear, year, newYears.length - year);
+		} else {
+			newIdsByYear = idsByYear.clone();
+			newIdsByYear[year] = newIdsByYear[year].clone();
+			newIdsByYear[year].remove(bookId);
+		}
+		return new CatalogSnapshot(remove(ids, row), remove(releaseYears, row), remove(titles, row),
+				remove(authors, row), remove(owners, row), newByReleaseYear, newAvailable, newYears, newIdsByYear,
+				dictionary);
+	}
+
+	/**
+	 * Return snapshot with the given changes. Unlike {@link #with} and
+	 * {@link #without} the snapshot is built once for all of them.
+	 *
+	 * @param changes books by id, {@literal null} for deleted books, must not
+	 *                be {@literal null}.
+	 * @return new snapshot.
+	 */
+	public CatalogSnapshot withChanges(Map<Integer, BookSnapshot> changes) {
+		Map<Integer, BookSnapshot> books = new HashMap<>();
+		for (int row = 0; row < size(); row++)
+			if (!changes.containsKey(ids[row]))
+				books.put(ids[row], row(row, BookSnapshot::new));
+		changes.forEach((bookId, book) -> {
+			if (book != null)
+				books.put(bookId, book);
+		});
+		return of(books.values());
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Return books from the given position sorted by the given options.
+	 *
+	 * @param sortByYear if true then sort by year and id, otherwise by id.
+	 * @param from       zero-based position of the first book.
+	 * @param count      maximum number of books.
+	 * @return books in the required range.
+	 */
+	public List<BookSnapshot> range(boolean sortByYear, long from, int count) {
+		return range(sortByYear, BookFilter.NONE, from, count);
+	}
+
+	/**
+	 * Return books matching the filter from the given position sorted by the
+	 * given options.
+	 *
+	 * @param sortByYear if true then sort by year and id, otherwise by id.
+	 * @param filter     must not be {@literal null}.
+	 * @param from       zero-based position of the first book among matching
+	 *                   ones.
+	 * @param count      maximum number of books.
+	 * @return books in the required range.
+	 */
+	public List<BookSnapshot> range(boolean sortByYear, BookFilter filter, long from, int count) {
+		return range(sortByYear, filter, from, count, BookSnapshot::new);
+	}
+
+	/**
+	 * Return books matching the filter from the given position sorted by the
+	 * given options, every book built by the mapper.
+	 *
+	 * @param sortByYear if true then sort by year and id, otherwise by id.
+	 * @param filter     must not be {@literal null}.
+	 * @param from       zero-based position of the first book among matching
+	 *                   ones.
+	 * @param count      maximum number of books.
+	 * @param mapper     must not be {@literal null}.
+	 * @return books in the required range.
+	 */
+	public <T> List<T> range(boolean sortByYear, BookFilter filter, long from, int count, RowMapper<T> mapper) {
+		return select(sortByYear, filter, 0, from, count, mapper);
+	}
+
+	/**
+	 * Return books that follow the given key sorted by the given options.
+	 *
+	 * @param sortByYear  if true then sort by year and id, otherwise by id.
+	 * @param releaseYear year of the last book on the previous page, ignored if
+	 *                    not sorted by year.
+	 * @param id          id of the last book on the previous page.
+	 * @param count       maximum number of books.
+	 * @return books that follow the key.
+	 */
+	public List<BookSnapshot> after(boolean sortByYear, int releaseYear, int id, int count) {
+		return after(sortByYear, BookFilter.NONE, releaseYear, id, count);
+	}
+
+	/**
+	 * Return books matching the filter that follow the given key sorted by the
+	 * given options.
+	 *
+	 * @param sortByYear  if true then sort by year and id, otherwise by id.
+	 * @param filter      must not be {@literal null}.
+	 * @param releaseYear year of the last book on the previous page, ignored if
+	 *                    not sorted by year.
+	 * @param id          id of the last book on the previous page.
+	 * @param count       maximum number of books.
+	 * @return books that follow the key.
+	 */
+	public List<BookSnapshot> after(boolean sortByYear, BookFilter filter, int releaseYear, int id, int count) {
+		return after(sortByYear, filter, releaseYear, id, count, BookSnapshot::new);
+	}
+
+	/**
+	 * Return books matching the filter that follow the given key sorted by the
+	 * given options, every book built by the mapper.
+	 *
+	 * @param sortByYear  if true then sort by year and id, otherwise by id.
+	 * @param filter      must not be {@literal null}.
+	 * @param releaseYear year of the last book on the previous page, ignored if
+	 *                    not sorted by year.
+	 * @param id          id of the last book on the previous page.
+	 * @param count       maximum number of books.
+	 * @param mapper      must not be {@literal null}.
+	 * @return books that follow the key.
+	 */
+	public <T> List<T> after(boolean sortByYear, BookFilter filter, int releaseYear, int id, int count,
+			RowMapper<T> mapper) {
+		return select(sortByYear, filter, upperBound(sortByYear, releaseYear, id), 0, count, mapper);
+	}
+
+	/**
+	 * Return number of books matching the filter.
+	 *
+	 * @param filter must not be {@literal null}.
+	 * @return number of books matching the filter.
+	 */
+	public int count(BookFilter filter) {
+		if (!filter.hasYearRange())
+			return filter.isAvailable() ? available.getCardinality() : size();
+		if (!filter.isAvailable())
+			return yearEnd(filter.getToYear()) - yearStart(filter.getFromYear());
+		int count = 0;
+		for (int year = firstYear(filter.getFromYear()); year < lastYear(filter.getToYear()); year++)
+			count += RoaringBitmap.andCardinality(idsByYear[year], available);
+		return count;
+	}
+
+	// returns count books matching the filter, skipping the given number of them from the given position
+	private <T> List<T> select(boolean sortByYear, BookFilter filter, int start, long skip, int count,
+			RowMapper<T> mapper) {
+		List<T> result = new ArrayList<>();
+		if (sortByYear) {
+			// books in the year range are adjacent in this order
+			int end = yearEnd(filter.getToYear());
+			start = Math.max(start, yearStart(filter.getFromYear()));
+			if (skip > 0)
+				start = filter.isAvailable() ? skipAvailable(start, end, skip) : (int) Math.min(start + skip, end);
+			for (int position = start; position < end && result.size() < count; position++) {
+				int row = byReleaseYear[position];
+				if (!filter.isAvailable() || owners[row] == NO_OWNER)
+					result.add(row(row, mapper));
+			}
+		} else if (filter.isAvailable() || filter.hasYearRange()) {
+			if (start >= size())
+				return result;
+			RoaringBitmap matching = matching(filter);
+			// skips the ids without visiting them
+			long first = (long) matching.rank(ids[start]) - (matching.contains(ids[start]) ? 1 : 0) + skip;
+			if (first >= matching.getLongCardinality())
+				return result;
+			PeekableIntIterator matchingIds = matching.getIntIterator();
+			matchingIds.advanceIfNeeded(matching.select((int) first));
+			while (matchingIds.hasNext() && result.size() < count)
+				result.add(row(Arrays.binarySearch(ids, matchingIds.next()), mapper));
+		} else {
+			for (int row = (int) Math.min(start + skip, size()); row < size() && result.size() < count; row++)
+				result.add(row(row, mapper));
+		}
+		return result;
+	}
+
+	// ids of books matching the filter
+	private RoaringBitmap matching(BookFilter filter) {
+		if (!filter.hasYearRange())
+			return available;
+		RoaringBitmap inYears = FastAggregation.or(
+				Arrays.copyOfRange(idsByYear, firstYear(filter.getFromYear()), lastYear(filter.getToYear())));
+		return filter.isAvailable() ? RoaringBitmap.and(inYears, available) : inYears;
+	}
+
+	// position in the release year order of the available book that follows the given number of available ones
+	private int skipAvailable(int start, int end, long skip) {
+		int position = start;
+		while (position < end) {
+			int row = byReleaseYear[position];
+			int releaseYear = releaseYears[row];
+			RoaringBitmap availableInYear = RoaringBitmap.and(idsByYear[Arrays.binarySearch(years, releaseYear)],
+					available);
+			// books of a year are ordered by id
+			long before = availableInYear.rank(ids[row]) - (availableInYear.contains(ids[row]) ? 1 : 0);
+			long inYear = availableInYear.getLongCardinality() - before;
+			if (skip < inYear)
+				return upperBound(true, releaseYear, availableInYear.select((int) (before + skip))) - 1;
+			skip -= inYear;
+			position = yearEnd(releaseYear);
+		}
+		return end;
+	}
+
+	// index of the first year in years that is the given year or later
+	private int firstYear(int releaseYear) {
+		int index = Arrays.binarySearch(years, releaseYear);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	// index of the first year in years that is later than the given year
+	private int lastYear(int releaseYear) {
+		return releaseYear == Integer.MAX_VALUE ? years.length : firstYear(releaseYear + 1);
+	}
+
+	// position of the first book released in the given year or later
+	private int yearStart(int releaseYear) {
+		return releaseYear == Integer.MIN_VALUE ? 0 : upperBound(true, releaseYear - 1, Integer.MAX_VALUE);
+	}
+
+	// position of the first book released after the given year
+	private int yearEnd(int releaseYear) {
+		return upperBound(true, releaseYear, Integer.MAX_VALUE);
+	}
+
+	// position of the first book that follows the key
+	private int upperBound(boolean sortByYear, int releaseYear, int id) {
+		int low = 0;
+		int high = size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int row = sortByYear ? byReleaseYear[middle] : middle;
+			int comparison = sortByYear ? compare(releaseYears[row], ids[row], releaseYear, id)
+					: Integer.compare(ids[row], id);
+			if (comparison <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	int[] ids() {
+		return ids;
+	}
+
+	int[] releaseYears() {
+		return releaseYears;
+	}
+
+	int[] titles() {
+		return titles;
+	}
+
+	int[] authors() {
+		return authors;
+	}
+
+	int[] owners() {
+		return owners;
+	}
+
+	// strings of the dictionary, codes of the rows of this snapshot are below its length
+	String[] strings() {
+		return dictionary.strings();
+	}
+
+	private <T> T row(int row, RowMapper<T> mapper) {
+		return mapper.map(ids[row], dictionary.decode(titles[row]), dictionary.decode(authors[row]),
+				releaseYears[row], owners[row] == NO_OWNER ? null : owners[row]);
+	}
+
+	private int compareByReleaseYear(int firstRow, int secondRow) {
+		return compare(releaseYears[firstRow], ids[firstRow], releaseYears[secondRow], ids[secondRow]);
+	}
+
+	private static int compare(int firstYear, int firstId, int secondYear, int secondId) {
+		int comparison = Integer.compare(firstYear, secondYear);
+		return comparison != 0 ? comparison : Integer.compare(firstId, secondId);
+	}
+
+	private static int[] insert(int[] array, int index, int value) {
+		int[] result = new int[array.length + 1];
+		System.arraycopy(array, 0, result, 0, index);
+		result[index] = value;
+		System.arraycopy(array, index, result, index + 1, array.length - index);
+		return result;
+	}
+
+	private static int[] remove(int[] array, int index) {
+		int[] result = new int[array.length - 1];
+		System.arraycopy(array, 0, result, 0, index);
+		System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+		return result;
+	}
+
+	/**
+	 * Append-only string dictionary. Codes of existing strings never change,
+	 * so snapshots can share it. Only the writer of the catalog encodes.
+	 */
+	private static final class Dictionary {
+		private final Map<String, Integer> codes = new HashMap<>();
+		private volatile String[] strings = new String[16];
+		private int size;
+
+		Dictionary() {
+		}
+
+		Dictionary(String[] strings) {
+			this.strings = Arrays.copyOf(strings, Math.max(16, strings.length));
+			size = strings.length;
+			for (int code = 0; code < size; code++)
+				codes.putIfAbsent(strings[code], code);
+		}
+
+		synchronized int encode(String value) {
+			Integer code = codes.get(value);
+			if (code != null)
+				return code;
+			if (size == strings.length)
+				strings = Arrays.copyOf(strings, size * 2);
+			strings[size] = value;
+			codes.put(value, size);
+			return size++;
+		}
+
+		String decode(int code) {
+			return strings[code];
+		}
+
+		synchronized String[] strings() {
+			return Arrays.copyOf(strings, size);
+		}
+
+		// strings of deleted and changed books are never removed, every row uses two strings at most
+		boolean isWasteful(int rows) {
+			return size > 2 * (2 * rows) + 1024;
+		}
+
+		Dictionary compact() {
+			return new Dictionary();
+		}
+
+		// returns codes of this dictionary for the codes of the other one
+		int[] recode(int[] values, Dictionary other) {
+			if (other == this)
+				return values;
+			int[] result = new int[values.length];
+			for (int i = 0; i < values.length; i++)
+				result[i] = encode(other.decode(values[i]));
+			return result;
+		}
+	}
+}
@@ -43,6 +43,10 @@ public class SecurityConfig {
 			"/books/\\d+/release",
 			"/account/.+"
 	};
+	private static final String[] USER_API_ONLY_WHITELIST = {
+			"/api/books/addowner",
+			"/api/books/release"
+	};
 	private static final String[] ALL_WHITELIST = {
 			"/auth/register",
 			"/auth/login",
@@ -51,9 +55,20 @@ public class SecurityConfig {
 			"/books",
 			"/books/search"
 	};
-	private static final String[] ALL_API_WHITELIST = Stream.of(ALL_WHITELIST).map(str -> "/api" + str)
+	private static final String[] ALL_API_ONLY_WHITELIST = {
+			"/api/books/search/ranked",
+			"/api/books/suggest",
+			"/api/books/export",
+			"/api/books/facets",
+			"/api/books/filter",
+			"/api/books/changes",
+			"/api/books/popular"
+	};
+	private static final String[] ALL_API_WHITELIST = Stream.concat(
+			Stream.of(ALL_WHITELIST).map(str -> "/api" + str), Stream.of(ALL_API_ONLY_WHITELIST))
 			.toArray(String[]::new);
-	private static final String[] USER_API_WHITELIST = Stream.of(USER_WHITELIST).map(str -> "/api" + str)
+	private static final String[] USER_API_WHITELIST = Stream.concat(
+			Stream.of(USER_WHITELIST).map(str -> "/api" + str), Stream.of(USER_API_ONLY_WHITELIST))
 			.toArray(String[]::new);
 
 	private final PeopleService peopleService;
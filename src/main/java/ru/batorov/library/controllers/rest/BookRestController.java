@@ -3,13 +3,28 @@ package ru.batorov.library.controllers.rest;
 import static ru.batorov.library.util.AuthenticationHelper.*;
 import static ru.batorov.library.util.DTOConvert.*;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
@@ -23,19 +38,42 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import ru.batorov.library.dto.CacheStatsDTO;
 import ru.batorov.library.dto.book.BookAdminDTO;
 import ru.batorov.library.dto.book.BookCreationDTO;
+import ru.batorov.library.dto.book.BookLoanDTO;
+import ru.batorov.library.dto.book.BookLoanResultDTO;
 import ru.batorov.library.dto.book.BookOwnerDTO;
+import ru.batorov.library.dto.book.BookPopularityDTO;
+import ru.batorov.library.dto.book.BookChangesDTO;
+import ru.batorov.library.dto.book.BookFacetsDTO;
+import ru.batorov.library.dto.book.BookSuggestionsDTO;
 import ru.batorov.library.dto.book.BookUserDTO;
 import ru.batorov.library.models.Book;
 import ru.batorov.library.models.Person;
+import ru.batorov.library.repositories.BookSpecifications;
+import ru.batorov.library.services.BookCacheService;
+import ru.batorov.library.services.BookFacetService;
+import ru.batorov.library.services.BookImportService;
+import ru.batorov.library.services.BookPopularityService;
 import ru.batorov.library.services.BookService;
-import ru.batorov.library.services.PeopleService;
+import ru.batorov.library.services.BookSuggestService;
+import ru.batorov.library.services.CatalogService;
+import ru.batorov.library.services.LoanEventService;
+import ru.batorov.library.util.BookCursor;
+import ru.batorov.library.util.BookFilter;
+import ru.batorov.library.util.ChangeCursor;
+import ru.batorov.library.util.FieldSet;
+import ru.batorov.library.util.ResourceVersion;
 import ru.batorov.library.util.exceptions.ErrorsGetter;
 import springfox.documentation.annotations.ApiIgnore;
 
@@ -43,39 +81,272 @@ import springfox.documentation.annotations.ApiIgnore;
 @RequestMapping("/api/books")
 @Tag(name = "Books", description = "The Books API. Contains all the operations that can be performed with a book.")
 public class BookRestController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    private static final int DEFAULT_ITEMS_PER_PAGE = 20;
+    private static final int CHANGES_PER_PAGE = 500;
+    // ranked search collects all hits up to the page, so pages are bounded
+    private static final int MAX_RANKED_PER_PAGE = 100;
+    private static final List<String> BOOK_FIELDS = List.of("id", "title", "author", "releaseYear");
+    private static final List<String> BOOK_OWNER_FIELDS = List.of("id", "title", "author", "releaseYear", "owner");
+
     private final BookService bookService;
-    private final PeopleService peopleService;
+    private final BookSuggestService bookSuggestService;
+    private final BookCacheService bookCacheService;
+    private final BookFacetService bookFacetService;
+    private final BookImportService bookImportService;
+    private final BookPopularityService bookPopularityService;
+    private final CatalogService catalogService;
+    private final LoanEventService loanEventService;
     private final ModelMapper modelMapper;
+    private final ObjectMapper objectMapper;
+    private final Duration exportTimeout;
+    private final Duration importTimeout;
 
-    public BookRestController(BookService bookService, PeopleService peopleService, ModelMapper modelMapper) {
+    public BookRestController(BookService bookService, BookSuggestService bookSuggestService,
+            BookCacheService bookCacheService, BookFacetService bookFacetService,
+            BookImportService bookImportService, BookPopularityService bookPopularityService,
+            CatalogService catalogService, LoanEventService loanEventService, ModelMapper modelMapper,
+            ObjectMapper objectMapper, @Value("${library.export.timeout:1h}") Duration exportTimeout,
+            @Value("${library.import.timeout:1h}") Duration importTimeout) {
         this.bookService = bookService;
-        this.peopleService = peopleService;
+        this.bookSuggestService = bookSuggestService;
+        this.bookCacheService = bookCacheService;
+        this.bookFacetService = bookFacetService;
+        this.bookImportService = bookImportService;
+        this.bookPopularityService = bookPopularityService;
+        this.catalogService = catalogService;
+        this.loanEventService = loanEventService;
         this.modelMapper = modelMapper;
+        this.objectMapper = objectMapper;
+        this.exportTimeout = exportTimeout;
+        this.importTimeout = importTimeout;
     }
 
     @GetMapping()
-    @Operation(summary = "Gets all books", description = "You can sort books by year or get required page with various amount of books in one page", tags = "Books")
-    public Collection<BookUserDTO> all(
+    @Operation(summary = "Gets all books", description = "You can sort books by year or get required page with various amount of books in one page. "
+            + "Pass after (empty for the first page) to use cursor pagination, the next cursor is returned in the " + NEXT_CURSOR_HEADER + " header. "
+            + "Paged responses contain total number of books in the " + TOTAL_COUNT_HEADER + " header. "
+            + "Pass available=true to get only books that are not taken and fromYear, toYear to limit release years. "
+            + "Pass fields to get only some of id, title, author, releaseYear, for example fields=id,title. "
+            + "Supports conditional requests with If-None-Match and If-Modified-Since", tags = "Books")
+    @ApiResponse(responseCode = "304", description = "Books haven't changed")
+    public ResponseEntity<Collection<?>> all(
             @RequestParam(value = "sortByYear", required = false) boolean sortByYear,
             @RequestParam(value = "page", required = false) Integer page,
-            @RequestParam(value = "itemsPerPage", required = false) Integer itemsPerPage) {
-        System.out.println("test\n");
-        List<Book> books = page == null || itemsPerPage == null ? bookService.all(sortByYear)
-                : bookService.all(sortByYear, page, itemsPerPage);
-        return convertToBookUserDTOCollection(books, modelMapper);
+            @RequestParam(value = "itemsPerPage", required = false) Integer itemsPerPage,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "available", required = false) boolean available,
+            @RequestParam(value = "fromYear", required = false) Integer fromYear,
+            @RequestParam(value = "toYear", required = false) Integer toYear,
+            @RequestParam(value = "fields", required = false) String fields,
+            @ApiIgnore WebRequest request) {
+        BookFilter filter = BookFilter.of(available, fromYear, toYear);
+        FieldSet fieldSet = FieldSet.of(fields, BOOK_FIELDS);
+        if (catalogService.version().isNotModified(request))
+            return null;
+        if (after != null) {
+            int size = itemsPerPage == null ? DEFAULT_ITEMS_PER_PAGE : itemsPerPage;
+            List<Book> books = bookService.allAfter(sortByYear, filter, BookCursor.decode(after, sortByYear), size);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .header(TOTAL_COUNT_HEADER, String.valueOf(bookService.count(filter)));
+            if (books.size() == size)
+                response.header(NEXT_CURSOR_HEADER,
+                        BookCursor.after(books.get(books.size() - 1), sortByYear).encode(sortByYear));
+            return response.body(convertToBooks(books, fieldSet));
+        }
+        if (page == null || itemsPerPage == null)
+            return ResponseEntity.ok(convertToBooks(bookService.all(sortByYear, filter), fieldSet));
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(bookService.count(filter)))
+                .body(convertToBooks(bookService.all(sortByYear, filter, page, itemsPerPage), fieldSet));
+    }
+
+    // sparse fieldsets leave out fields that weren't requested
+    private Collection<?> convertToBooks(Collection<Book> books, FieldSet fields) {
+        return fields.isAll() ? convertToBookUserDTOCollection(books)
+                : convertToBookFieldsCollection(books, fields);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Exports all books", description = "Streams books as ndjson or csv, memory usage doesn't depend on the number of books", tags = "Books")
+    @ApiResponse(responseCode = "400", description = "Unknown format")
+    public WebAsyncTask<Void> export(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "sortByYear", required = false) boolean sortByYear,
+            @ApiIgnore HttpServletResponse response) {
+        // the export may take longer than spring.mvc.async.request-timeout, so it has its own timeout
+        switch (format) {
+            case "ndjson":
+                response.setContentType(NDJSON.toString());
+                return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+                    exportNdjson(response.getOutputStream(), sortByYear);
+                    return null;
+                });
+            case "csv":
+                response.setContentType(CSV.toString());
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=books.csv");
+                return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+                    exportCsv(response.getOutputStream(), sortByYear);
+                    return null;
+                });
+            default:
+                throw new IllegalArgumentException("format should be ndjson or csv");
+        }
+    }
+
+    private void exportNdjson(OutputStream out, boolean sortByYear) throws IOException {
+        bookService.forEachBook(sortByYear, book -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(convertToBookUserDTO(book)));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    private void exportCsv(OutputStream out, boolean sortByYear) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,title,author,releaseYear\n");
+        bookService.forEachBook(sortByYear, book -> {
+            try {
+                writer.write(book.getId() + "," + csvField(book.getTitle()) + "," + csvField(book.getAuthor()) + ","
+                        + book.getReleaseYear() + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r"))
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        return value;
+    }
+
+    @GetMapping("/popular")
+    @Operation(summary = "Gets the most borrowed books", description = "The most borrowed first, served from memory. "
+            + "Borrows of the last minute may be not counted yet", tags = "Books")
+    public List<BookPopularityDTO> popular() {
+        return bookPopularityService.mostBorrowed();
+    }
+
+    @GetMapping("/filter")
+    @Operation(summary = "Filters books", description = "All passed conditions must match. author is compared exactly, authorPrefix matches the beginning of the author. "
+            + "taken=false returns free books, ownerId is for admins and the owner. "
+            + "Pass the " + NEXT_CURSOR_HEADER + " header of the previous response as after to get the next page. "
+            + "Supports conditional requests with If-None-Match and If-Modified-Since", tags = "Books")
+    @ApiResponse(responseCode = "304", description = "Books haven't changed")
+    public ResponseEntity<Collection<BookUserDTO>> filter(
+            @RequestParam(value = "author", required = false) String author,
+            @RequestParam(value = "authorPrefix", required = false) String authorPrefix,
+            @RequestParam(value = "fromYear", required = false) Integer fromYear,
+            @RequestParam(value = "toYear", required = false) Integer toYear,
+            @RequestParam(value = "taken", required = false) Boolean taken,
+            @RequestParam(value = "ownerId", required = false) Integer ownerId,
+            @RequestParam(value = "sortByYear", required = false) boolean sortByYear,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "itemsPerPage", defaultValue = "" + DEFAULT_ITEMS_PER_PAGE) Integer itemsPerPage,
+            @ApiIgnore Authentication authentif, @ApiIgnore WebRequest request) {
+        if (itemsPerPage < 1)
+            throw new IllegalArgumentException("itemsPerPage > 0");
+        if (ownerId != null && (authentif == null || !(hasRoleByAuthentication(authentif, "ROLE_ADMIN")
+                || getUserIdByAuthentication(authentif) == ownerId)))
+            throw new AccessDeniedException("Only admins can see books of other persons");
+        if (catalogService.version().isNotModified(request))
+            return null;
+        Specification<Book> specification = Specification.where(null);
+        if (author != null)
+            specification = specification.and(BookSpecifications.authorIs(author));
+        if (authorPrefix != null)
+            specification = specification.and(BookSpecifications.authorStartsWith(authorPrefix));
+        if (fromYear != null)
+            specification = specification.and(BookSpecifications.releaseYearFrom(fromYear));
+        if (toYear != null)
+            specification = specification.and(BookSpecifications.releaseYearTo(toYear));
+        if (taken != null)
+            specification = specification.and(BookSpecifications.taken(taken));
+        if (ownerId != null)
+            specification = specification.and(BookSpecifications.ownerIs(ownerId));
+        List<Book> books = bookService.filter(specification, sortByYear, BookCursor.decode(after, sortByYear),
+                itemsPerPage);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (books.size() == itemsPerPage)
+            response.header(NEXT_CURSOR_HEADER,
+                    BookCursor.after(books.get(books.size() - 1), sortByYear).encode(sortByYear));
+        return response.body(convertToBookUserDTOCollection(books));
     }
 
     @GetMapping("/search")
     @Operation(summary = "Search for books that contains request string", tags = "Books")
     public Collection<BookUserDTO> search(@RequestParam(value = "findRequest") String findRequest) {
         if (findRequest != null && !findRequest.equals(""))
-            return convertToBookUserDTOCollection(bookService.findBooksByTitleContaining(findRequest), modelMapper);
+            return bookService.findBookDTOsByTitleContaining(findRequest);
         return null;
     }
 
+    @GetMapping("/search/ranked")
+    @Operation(summary = "Full-text search for books by title and author", description = "Results are ordered by relevance, typos are tolerated", tags = "Books")
+    @ApiResponse(responseCode = "400", description = "Empty query, page < 0 or itemsPerPage not in 1..100")
+    public Collection<BookUserDTO> searchRanked(@RequestParam(value = "query") String query,
+            @RequestParam(value = "page", defaultValue = "0") Integer page,
+            @RequestParam(value = "itemsPerPage", defaultValue = "" + DEFAULT_ITEMS_PER_PAGE) Integer itemsPerPage) {
+        if (query.isBlank())
+            throw new IllegalArgumentException("query shouldn't be empty");
+        if (page < 0 || itemsPerPage < 1 || itemsPerPage > MAX_RANKED_PER_PAGE)
+            throw new IllegalArgumentException("page >= 0 and 0 < itemsPerPage <= " + MAX_RANKED_PER_PAGE);
+        return convertToBookUserDTOCollection(bookService.findBooksRanked(query, page, itemsPerPage));
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggests titles and authors that start with the prefix", description = "Case insensitive, at most 10 of each", tags = "Books")
+    public BookSuggestionsDTO suggest(@RequestParam(value = "prefix") String prefix) {
+        if (prefix.isEmpty())
+            return new BookSuggestionsDTO(List.of(), List.of());
+        return new BookSuggestionsDTO(bookSuggestService.suggestTitles(prefix), bookSuggestService.suggestAuthors(prefix));
+    }
+
+    @GetMapping("/facets")
+    @Operation(summary = "Gets number of books and available books per author and per decade", description = "Authors with most books go first, decades are in ascending order", tags = "Books")
+    public BookFacetsDTO facets() {
+        return bookFacetService.facets();
+    }
+
+    @GetMapping("/changes")
+    @Operation(summary = "Gets books changed after the cursor", description = "Returns created and updated books and ids of deleted books ordered by the time of the change. "
+            + "Pass since (empty for the first call) the next cursor of the previous response, call again while hasMore is true. "
+            + "Changes of the last seconds are returned by later calls", tags = "Books")
+    @ApiResponse(responseCode = "400", description = "Malformed cursor or itemsPerPage < 1")
+    public BookChangesDTO changes(@RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "itemsPerPage", defaultValue = "" + CHANGES_PER_PAGE) Integer itemsPerPage) {
+        if (itemsPerPage < 1)
+            throw new IllegalArgumentException("itemsPerPage > 0");
+        return bookService.changes(ChangeCursor.decode(since), itemsPerPage);
+    }
+
+    @GetMapping("/cache/stats")
+    @Operation(summary = "Gets statistics of the book cache", description = "Admins only", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    public CacheStatsDTO cacheStats() {
+        return bookCacheService.stats();
+    }
+
     @GetMapping("/{bookId}")
-    @Operation(summary = "Gets book with required id", description = "Owners field depends on his existence and your role", tags = "Books")
-    public BookOwnerDTO show(@PathVariable("bookId") int bookId, @ApiIgnore Authentication authentif) {
+    @Operation(summary = "Gets book with required id", description = "Owners field depends on his existence and your role. "
+            + "Pass fields to get only some of id, title, author, releaseYear, owner. "
+            + "Supports conditional requests with If-None-Match and If-Modified-Since", tags = "Books")
+    @ApiResponse(responseCode = "304", description = "Book hasn't changed")
+    public Object show(@PathVariable("bookId") int bookId,
+            @RequestParam(value = "fields", required = false) String fields,
+            @ApiIgnore Authentication authentif, @ApiIgnore WebRequest request) {
+        FieldSet fieldSet = FieldSet.of(fields, BOOK_OWNER_FIELDS);
+        ResourceVersion version = bookService.findVersion(bookId, viewer(authentif));
+        if (version != null && version.isNotModified(request))
+            return null;
         Book book = bookService.getBookByIdWithOwner(bookId);
         if (book.getOwner() != null) {
             if (authentif != null && authentif.isAuthenticated())
@@ -86,10 +357,19 @@ public class BookRestController {
             } else
             book.setOwner(new Person());
         }
+        if (!fieldSet.isAll())
+            return convertToBookFields(book, fieldSet);
         BookOwnerDTO bookOwnerDTO = convertToBookOwnerDTO(book, modelMapper);
         return bookOwnerDTO;
     }
 
+    // the owner of a book is shown depending on the user
+    private static String viewer(Authentication authentif) {
+        if (authentif == null || !authentif.isAuthenticated())
+            return null;
+        return hasRoleByAuthentication(authentif, "ROLE_ADMIN") ? "ROLE_ADMIN" : getUsernameByAuthentication(authentif);
+    }
+
     @PostMapping("/new")
     @Operation(summary = "Creates a new book", description = "Admins only", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "400", description = "Bad input values")
@@ -102,6 +382,51 @@ public class BookRestController {
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
+    @GetMapping("/{bookId}/loans")
+    @Operation(summary = "Gets loans of book with required id", description = "Admins only. The latest loans first, "
+            + "loans of the last seconds may be missing", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    public List<BookLoanDTO> loans(@PathVariable("bookId") int bookId,
+            @RequestParam(value = "page", defaultValue = "0") Integer page,
+            @RequestParam(value = "itemsPerPage", defaultValue = "" + DEFAULT_ITEMS_PER_PAGE) Integer itemsPerPage) {
+        return loanEventService.history(bookId, page, itemsPerPage).stream()
+                .map(event -> modelMapper.map(event, BookLoanDTO.class)).toList();
+    }
+
+    @PostMapping("/import")
+    @Operation(summary = "Imports books", description = "Admins only. Reads ndjson or csv in the format of the export, ids are ignored. "
+            + "Rows are validated like new books and inserted in batches, memory usage doesn't depend on the size of the file. "
+            + "Streams ndjson with every rejected row and the progress after every batch, the last line has done=true", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "400", description = "Unknown format")
+    public WebAsyncTask<Void> importBooks(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @ApiIgnore InputStream body,
+            @ApiIgnore HttpServletResponse response) {
+        if (!format.equals("ndjson") && !format.equals("csv"))
+            throw new IllegalArgumentException("format should be ndjson or csv");
+        response.setContentType(NDJSON.toString());
+        return new WebAsyncTask<>(importTimeout.toMillis(), () -> {
+            importBooks(body, format.equals("csv"), response.getOutputStream());
+            return null;
+        });
+    }
+
+    private void importBooks(InputStream in, boolean csv, OutputStream out) throws IOException {
+        // every line is flushed, so the client sees the progress while the file is imported
+        Consumer<Object> writer = line -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(line));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        if (csv)
+            bookImportService.importCsv(in, writer::accept, writer::accept);
+        else
+            bookImportService.importNdjson(in, writer::accept, writer::accept);
+    }
+
     @PatchMapping("/{bookId}/edit")
     @Operation(summary = "Updates book with required id", description = "Admins only", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
     @ApiResponse(responseCode = "400", description = "Bad input values")
@@ -122,25 +447,53 @@ public class BookRestController {
     }
 
     @PatchMapping("/{bookId}/addowner")
-    @Operation(summary = "Adds owner to books with required id", description = "ownersId is admins parameter", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Operation(summary = "Adds owner to books with required id", description = "ownersId is admins parameter. "
+            + "The book is checked and taken atomically, so of concurrent requests only one gets it", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "409", description = "Book is already taken")
     public ResponseEntity<HttpStatus> addOwner(
             @RequestParam(value = "ownersId", required = false) Integer ownersId,
             @PathVariable("bookId") int bookId,
             @ApiIgnore Authentication authentif) {
-        Book book = bookService.getBookById(bookId);
-        if (book.getOwner() == null) {
-            int personId = getUserIdByAuthentication(authentif);
-            if (ownersId != null) {
-                if (hasRoleByAuthentication(authentif, "ROLE_ADMIN") || personId == ownersId)
-                    personId = ownersId;
-                else
-                    throw new AccessDeniedException("Only admins can give books to other persons");
-            }
-            bookService.addOwner(bookId, peopleService.getPersonById(personId));
+        int personId = getUserIdByAuthentication(authentif);
+        if (ownersId != null) {
+            if (hasRoleByAuthentication(authentif, "ROLE_ADMIN") || personId == ownersId)
+                personId = ownersId;
+            else
+                throw new AccessDeniedException("Only admins can give books to other persons");
         }
+        if (!bookService.checkout(bookId, personId))
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(HttpStatus.CONFLICT);
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
+    @PatchMapping("/addowner")
+    @Operation(summary = "Adds owner to several books", description = "Takes ids of up to 100 books, ownersId is admins parameter. "
+            + "Free books are taken in one update, the outcome for every id is DONE, NOT_FOUND or TAKEN", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "400", description = "More than 100 books")
+    public List<BookLoanResultDTO> addOwners(
+            @RequestParam(value = "ownersId", required = false) Integer ownersId,
+            @RequestBody List<Integer> bookIds,
+            @ApiIgnore Authentication authentif) {
+        int personId = getUserIdByAuthentication(authentif);
+        if (ownersId != null) {
+            if (hasRoleByAuthentication(authentif, "ROLE_ADMIN") || personId == ownersId)
+                personId = ownersId;
+            else
+                throw new AccessDeniedException("Only admins can give books to other persons");
+        }
+        return bookService.checkoutAll(bookIds, personId);
+    }
+
+    @PatchMapping("/release")
+    @Operation(summary = "Deletes owner from several books", description = "Takes ids of up to 100 books, users can return only their own books. "
+            + "Books are returned in one update, the outcome for every id is DONE, NOT_FOUND or NOT_OWNER", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "400", description = "More than 100 books")
+    public List<BookLoanResultDTO> deleteOwners(@RequestBody List<Integer> bookIds,
+            @ApiIgnore Authentication authentif) {
+        return bookService.releaseAll(bookIds,
+                hasRoleByAuthentication(authentif, "ROLE_ADMIN") ? null : getUserIdByAuthentication(authentif));
+    }
+
     @PatchMapping("/{bookId}/release")
     @Operation(summary = "Deletes Owner from book with required id", tags = "Books", security = @SecurityRequirement(name = "Bearer Authentication"))
     public ResponseEntity<HttpStatus> deleteOwner(@PathVariable("bookId") int bookId,
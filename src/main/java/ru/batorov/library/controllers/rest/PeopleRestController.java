@@ -1,6 +1,8 @@
 package ru.batorov.library.controllers.rest;
 
 import java.util.Collection;
+import java.util.List;
+
 import javax.validation.Valid;
 
 import static ru.batorov.library.util.DTOConvert.*;
@@ -16,7 +18,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -29,6 +33,8 @@ import ru.batorov.library.dto.person.PersonWithBooksAdminDTO;
 import ru.batorov.library.dto.person.PersonRegistrationDTO;
 import ru.batorov.library.models.Person;
 import ru.batorov.library.services.PeopleService;
+import ru.batorov.library.util.FieldSet;
+import ru.batorov.library.util.ResourceVersion;
 import ru.batorov.library.util.UsernameValidator;
 import ru.batorov.library.util.exceptions.ErrorsGetter;
 import springfox.documentation.annotations.ApiIgnore;
@@ -37,6 +43,8 @@ import springfox.documentation.annotations.ApiIgnore;
 @RequestMapping("/api/people")
 @Tag(name = "People", description = "The People API. Admin only. Contains all the operations that can be performed with a user.")
 public class PeopleRestController {
+    private static final List<String> PERSON_FIELDS = List.of("id", "fullName", "yearOfBirth", "roles");
+
     private final PeopleService peopleService;
     private final ModelMapper modelMapper;
     private final UsernameValidator usernameValidator;
@@ -48,10 +56,18 @@ public class PeopleRestController {
         this.usernameValidator = usernameValidator;
     }
 
-    @Operation(summary = "Gets all people", tags = "People", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Operation(summary = "Gets all people", description = "Pass fields to get only some of id, fullName, yearOfBirth, roles, for example fields=id,fullName. "
+            + "Supports conditional requests with If-None-Match", tags = "People", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "304", description = "People haven't changed")
     @GetMapping()
-    public Collection<PersonAdminDTO> all(Model model) {
-        return convertToPersonAdminDTOCollection(peopleService.allWithRoles(), modelMapper);
+    public Collection<?> all(Model model, @RequestParam(value = "fields", required = false) String fields,
+            @ApiIgnore WebRequest request) {
+        FieldSet fieldSet = FieldSet.of(fields, PERSON_FIELDS);
+        if (peopleService.allVersion().isNotModified(request))
+            return null;
+        if (fieldSet.isAll())
+            return peopleService.allAdminDTOs();
+        return convertToPersonFieldsCollection(peopleService.allWithFields(fieldSet), fieldSet, modelMapper);
     }
 
     @PostMapping("/new")
@@ -70,9 +86,14 @@ public class PeopleRestController {
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
-    @Operation(summary = "Shows user info", tags = "People", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @Operation(summary = "Shows user info", description = "Supports conditional requests with If-None-Match", tags = "People", security = @SecurityRequirement(name = "Bearer Authentication"))
+    @ApiResponse(responseCode = "304", description = "Person hasn't changed")
     @GetMapping("/{id}")
-    public PersonWithBooksAdminDTO show(@PathVariable("id") int personId, Model model) {
+    public PersonWithBooksAdminDTO show(@PathVariable("id") int personId, Model model,
+            @ApiIgnore WebRequest request) {
+        ResourceVersion version = peopleService.findVersion(personId);
+        if (version != null && version.isNotModified(request))
+            return null;
         Person person = peopleService.getPersonWithRolesAndBooks(personId);
         PersonWithBooksAdminDTO personWithBooksAdminDTO = convertToPersonWithBooksAdminDTO(person, modelMapper);
         return personWithBooksAdminDTO;
@@ -13,16 +13,23 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import ru.batorov.library.dto.book.BookAdminDTO;
+import ru.batorov.library.dto.book.BookUserDTO;
 import ru.batorov.library.dto.person.PersonUserDTO;
 import ru.batorov.library.models.Book;
 import ru.batorov.library.models.Person;
 import ru.batorov.library.services.BookService;
+import ru.batorov.library.services.PageCacheService;
 import ru.batorov.library.services.PeopleService;
+import ru.batorov.library.util.BookCursor;
+import ru.batorov.library.util.BookFilter;
+import ru.batorov.library.util.StreamingView;
 
 import static ru.batorov.library.util.AuthenticationHelper.*;
 import static ru.batorov.library.util.DTOConvert.*;
@@ -32,41 +39,85 @@ import java.util.List;
 @Controller
 @RequestMapping("/books")
 public class BookController {
+    private static final int DEFAULT_ITEMS_PER_PAGE = 20;
+
     private final BookService bookService;
     private final PeopleService peopleService;
+    private final PageCacheService pageCacheService;
     private final ModelMapper modelMapper;
 
-    public BookController(BookService bookService, PeopleService peopleService, ModelMapper modelMapper) {
+    public BookController(BookService bookService, PeopleService peopleService, PageCacheService pageCacheService,
+            ModelMapper modelMapper) {
         this.bookService = bookService;
         this.peopleService = peopleService;
+        this.pageCacheService = pageCacheService;
         this.modelMapper = modelMapper;
     }
 
     @GetMapping()
-    public String all(Model model,
+    public View all(Model model,
             @RequestParam(value = "sortByYear", required = false) Boolean sortByYear,
             @RequestParam(value = "page", required = false) Integer page,
-            @RequestParam(value = "itemsPerPage", required = false) Integer itemsPerPage) {
+            @RequestParam(value = "itemsPerPage", required = false) Integer itemsPerPage,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "available", required = false) Boolean available,
+            @RequestParam(value = "fromYear", required = false) Integer fromYear,
+            @RequestParam(value = "toYear", required = false) Integer toYear,
+            Authentication authentif, HttpServletRequest request) {
+        // the whole catalog is streamed, so it isn't cached
+        boolean unpaged = after == null && (page == null || itemsPerPage == null);
+        Object pageKey = unpaged ? null
+                : pageCacheService.key("books/all", authentif,
+                        sortByYear, page, itemsPerPage, after, available, fromYear, toYear);
+        View cached = pageCacheService.cached(pageKey);
+        if (cached != null)
+            return cached;
         if (sortByYear == null)
             sortByYear = false;
-        List<Book> books = page == null || itemsPerPage == null ? bookService.all(sortByYear)
-                : bookService.all(sortByYear, page, itemsPerPage);
-        model.addAttribute("bookUserDTOs", convertToBookUserDTOCollection(books, modelMapper));
-        return "books/all";
+        if (available == null)
+            available = false;
+        BookFilter filter = BookFilter.of(available, fromYear, toYear);
+        model.addAttribute("available", available);
+        model.addAttribute("fromYear", fromYear);
+        model.addAttribute("toYear", toYear);
+        View view = pageCacheService.render("books/all", pageKey, RequestContextUtils.getLocale(request));
+        if (unpaged) {
+            boolean sorted = sortByYear;
+            return new StreamingView<BookUserDTO>(view, "bookUserDTOs",
+                    action -> bookService.withBookDTOs(sorted, filter, action));
+        }
+        List<Book> books;
+        if (after != null) {
+            if (itemsPerPage == null)
+                itemsPerPage = DEFAULT_ITEMS_PER_PAGE;
+            books = bookService.allAfter(sortByYear, filter, BookCursor.decode(after, sortByYear), itemsPerPage);
+            if (books.size() == itemsPerPage) {
+                model.addAttribute("nextCursor",
+                        BookCursor.after(books.get(books.size() - 1), sortByYear).encode(sortByYear));
+                model.addAttribute("sortByYear", sortByYear);
+                model.addAttribute("itemsPerPage", itemsPerPage);
+            }
+        } else
+            books = bookService.all(sortByYear, filter, page, itemsPerPage);
+        model.addAttribute("bookUserDTOs", convertToBookUserDTOCollection(books));
+        return view;
     }
 
     @GetMapping("/search")
     public String search(Model model, @RequestParam(value = "findRequest", required = false) String findRequest) {
         if (findRequest != null && !findRequest.equals(""))
-            model.addAttribute("bookUserDTOs",
-                    convertToBookUserDTOCollection(bookService.findBooksByTitleContaining(findRequest), modelMapper));
+            model.addAttribute("bookUserDTOs", bookService.findBookDTOsByTitleContaining(findRequest));
         return "books/search";
     }
 
     @GetMapping("/{bookId}")
-    public String show(@PathVariable("bookId") int bookId, Model model,
+    public View show(@PathVariable("bookId") int bookId, Model model,
             @ModelAttribute("personUserDTO") PersonUserDTO personUserDTO,
-            Authentication authentif) {
+            Authentication authentif, HttpServletRequest request) {
+        Object pageKey = pageCacheService.key("books/show", authentif, bookId);
+        View cached = pageCacheService.cached(pageKey);
+        if (cached != null)
+            return cached;
         Book book = bookService.getBookById(bookId);
         model.addAttribute("bookUsersInfoDTO", convertToBookUsersInfoDTO(book, modelMapper));
 
@@ -83,7 +134,7 @@ public class BookController {
                     getUserIdByAuthentication(authentif) == book.getOwner().getId())
                 model.addAttribute("UserIsOwner", true);
         }
-        return "books/show";
+        return pageCacheService.render("books/show", pageKey, RequestContextUtils.getLocale(request));
     }
 
     // all methods after that are for admins only
@@ -136,7 +187,8 @@ public class BookController {
             person.setId(getUserIdByAuthentication(authentif));// если юзер, то узнаем его id
         }
 
-        bookService.addOwner(bookId, person);
+        // if somebody has already taken the book, its page shows that
+        bookService.checkout(bookId, person.getId());
         return "redirect:/books/" + bookId;
     }
 
@@ -5,8 +5,16 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import ru.batorov.library.services.BookPopularityService;
+
 @Controller
 public class HomePageController {
+    private final BookPopularityService bookPopularityService;
+
+    public HomePageController(BookPopularityService bookPopularityService) {
+        this.bookPopularityService = bookPopularityService;
+    }
+
     @GetMapping("/")
     public String home(Authentication authentif, Model model){
         System.out.println("\n\n\nhome");
@@ -18,6 +26,7 @@ public class HomePageController {
             .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ROLE_ADMIN")))
                 System.out.println("admin");
         }
+        model.addAttribute("popularBooks", bookPopularityService.mostBorrowed());
         return "home";
     }
 }
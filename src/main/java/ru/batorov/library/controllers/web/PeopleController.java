@@ -11,7 +11,11 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import ru.batorov.library.dto.RoleDTO;
@@ -23,6 +27,7 @@ import ru.batorov.library.models.Role;
 import ru.batorov.library.services.PeopleService;
 import ru.batorov.library.services.RolesService;
 import ru.batorov.library.services.SessionService;
+import ru.batorov.library.util.StreamingView;
 import ru.batorov.library.util.UsernameValidator;
 
 import static ru.batorov.library.util.DTOConvert.*;
@@ -37,22 +42,24 @@ public class PeopleController {
     private final UsernameValidator usernameValidator;
     private final RolesService rolesService;
     private final SessionService sessionService;
+    private final ThymeleafViewResolver viewResolver;
 
     public PeopleController(PeopleService peopleService, ModelMapper modelMapper,
             UsernameValidator usernameValidator, RolesService rolesService,
-            SessionService sessionService) {
+            SessionService sessionService, ThymeleafViewResolver viewResolver) {
         this.peopleService = peopleService;
         this.modelMapper = modelMapper;
         this.usernameValidator = usernameValidator;
         this.rolesService = rolesService;
         this.sessionService = sessionService;
+        this.viewResolver = viewResolver;
     }
 
     @GetMapping()
-    public String all(Model model) {
-        model.addAttribute("personUserDTOs",
-                convertToPersonAdminDTOCollection(peopleService.allWithRoles(), modelMapper));
-        return "people/all";
+    public View all(HttpServletRequest request) throws Exception {
+        return new StreamingView<PersonAdminDTO>(
+                viewResolver.resolveViewName("people/all", RequestContextUtils.getLocale(request)),
+                "personUserDTOs", peopleService::withAdminDTOs);
     }
 
     @GetMapping("/new")
@@ -10,6 +10,13 @@ public class RoleDTO implements PersonDTOInterface {
 	@NotEmpty(message = "name shouldn't be empty")
 	private String name;
 
+	public RoleDTO() {
+	}
+
+	public RoleDTO(String name) {
+		this.name = name;
+	}
+
 	public String getName() {
 		return name;
 	}
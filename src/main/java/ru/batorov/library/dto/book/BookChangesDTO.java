@@ -0,0 +1,56 @@
+package ru.batorov.library.dto.book;
+
+import java.util.Collection;
+
+public class BookChangesDTO {
+	private Collection<BookUserDTO> changed;
+
+	private Collection<Integer> deleted;
+
+	private String next;
+
+	private boolean hasMore;
+
+	public BookChangesDTO() {
+	}
+
+	public BookChangesDTO(Collection<BookUserDTO> changed, Collection<Integer> deleted, String next,
+			boolean hasMore) {
+		this.changed = changed;
+		this.deleted = deleted;
+		this.next = next;
+		this.hasMore = hasMore;
+	}
+
+	public Collection<BookUserDTO> getChanged() {
+		return changed;
+	}
+
+	public void setChanged(Collection<BookUserDTO> changed) {
+		this.changed = changed;
+	}
+
+	public Collection<Integer> getDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(Collection<Integer> deleted) {
+		this.deleted = deleted;
+	}
+
+	public String getNext() {
+		return next;
+	}
+
+	public void setNext(String next) {
+		this.next = next;
+	}
+
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+}
@@ -0,0 +1,42 @@
+package ru.batorov.library.dto.book;
+
+public class BookFacetDTO {
+	private String value;
+
+	private long count;
+
+	private long available;
+
+	public BookFacetDTO() {
+	}
+
+	public BookFacetDTO(String value, long count, long available) {
+		this.value = value;
+		this.count = count;
+		this.available = available;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public long getAvailable() {
+		return available;
+	}
+
+	public void setAvailable(long available) {
+		this.available = available;
+	}
+}
@@ -0,0 +1,33 @@
+package ru.batorov.library.dto.book;
+
+import java.util.Collection;
+
+public class BookFacetsDTO {
+	private Collection<BookFacetDTO> authors;
+
+	private Collection<BookFacetDTO> decades;
+
+	public BookFacetsDTO() {
+	}
+
+	public BookFacetsDTO(Collection<BookFacetDTO> authors, Collection<BookFacetDTO> decades) {
+		this.authors = authors;
+		this.decades = decades;
+	}
+
+	public Collection<BookFacetDTO> getAuthors() {
+		return authors;
+	}
+
+	public void setAuthors(Collection<BookFacetDTO> authors) {
+		this.authors = authors;
+	}
+
+	public Collection<BookFacetDTO> getDecades() {
+		return decades;
+	}
+
+	public void setDecades(Collection<BookFacetDTO> decades) {
+		this.decades = decades;
+	}
+}
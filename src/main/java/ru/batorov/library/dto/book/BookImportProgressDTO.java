@@ -0,0 +1,58 @@
+package ru.batorov.library.dto.book;
+
+/**
+ * Progress of an import, sent after every inserted batch and at the end.
+ */
+public class BookImportProgressDTO {
+	// rows read so far, imported and rejected
+	private long read;
+
+	private long imported;
+
+	private long rejected;
+
+	// true for the last progress of the import
+	private boolean done;
+
+	public BookImportProgressDTO() {
+	}
+
+	public BookImportProgressDTO(long read, long imported, long rejected, boolean done) {
+		this.read = read;
+		this.imported = imported;
+		this.rejected = rejected;
+		this.done = done;
+	}
+
+	public long getRead() {
+		return read;
+	}
+
+	public void setRead(long read) {
+		this.read = read;
+	}
+
+	public long getImported() {
+		return imported;
+	}
+
+	public void setImported(long imported) {
+		this.imported = imported;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public void setRejected(long rejected) {
+		this.rejected = rejected;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	public void setDone(boolean done) {
+		this.done = done;
+	}
+}
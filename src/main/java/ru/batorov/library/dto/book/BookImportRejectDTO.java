@@ -0,0 +1,35 @@
+package ru.batorov.library.dto.book;
+
+/**
+ * Row of an import that wasn't imported.
+ */
+public class BookImportRejectDTO {
+	// one-based line of the file where the row starts
+	private long line;
+
+	private String errors;
+
+	public BookImportRejectDTO() {
+	}
+
+	public BookImportRejectDTO(long line, String errors) {
+		this.line = line;
+		this.errors = errors;
+	}
+
+	public long getLine() {
+		return line;
+	}
+
+	public void setLine(long line) {
+		this.line = line;
+	}
+
+	public String getErrors() {
+		return errors;
+	}
+
+	public void setErrors(String errors) {
+		this.errors = errors;
+	}
+}
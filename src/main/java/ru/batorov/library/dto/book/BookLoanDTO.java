@@ -0,0 +1,40 @@
+package ru.batorov.library.dto.book;
+
+import java.time.LocalDateTime;
+
+import ru.batorov.library.models.LoanEvent;
+
+/**
+ * Book taken or returned by a person.
+ */
+public class BookLoanDTO {
+	private Integer personId;
+
+	private LoanEvent.Kind kind;
+
+	private LocalDateTime happenedAt;
+
+	public Integer getPersonId() {
+		return personId;
+	}
+
+	public void setPersonId(Integer personId) {
+		this.personId = personId;
+	}
+
+	public LoanEvent.Kind getKind() {
+		return kind;
+	}
+
+	public void setKind(LoanEvent.Kind kind) {
+		this.kind = kind;
+	}
+
+	public LocalDateTime getHappenedAt() {
+		return happenedAt;
+	}
+
+	public void setHappenedAt(LocalDateTime happenedAt) {
+		this.happenedAt = happenedAt;
+	}
+}
@@ -0,0 +1,44 @@
+package ru.batorov.library.dto.book;
+
+/**
+ * Outcome of a bulk checkout or return for one book.
+ */
+public class BookLoanResultDTO {
+	public enum Outcome {
+		// the book was checked out or returned
+		DONE,
+		NOT_FOUND,
+		// somebody already has the book
+		TAKEN,
+		// the book isn't taken by the person who returns it
+		NOT_OWNER
+	}
+
+	private Integer id;
+
+	private Outcome outcome;
+
+	public BookLoanResultDTO() {
+	}
+
+	public BookLoanResultDTO(Integer id, Outcome outcome) {
+		this.id = id;
+		this.outcome = outcome;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(Integer id) {
+		this.id = id;
+	}
+
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	public void setOutcome(Outcome outcome) {
+		this.outcome = outcome;
+	}
+}
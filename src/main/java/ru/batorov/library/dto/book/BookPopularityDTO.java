@@ -0,0 +1,67 @@
+package ru.batorov.library.dto.book;
+
+/**
+ * Book with the number of times it was borrowed.
+ */
+public class BookPopularityDTO {
+	private Integer id;
+
+	private String title;
+
+	private String author;
+
+	private Integer releaseYear;
+
+	private long borrowCount;
+
+	public BookPopularityDTO() {
+	}
+
+	public BookPopularityDTO(Integer id, String title, String author, Integer releaseYear, long borrowCount) {
+		this.id = id;
+		this.title = title;
+		this.author = author;
+		this.releaseYear = releaseYear;
+		this.borrowCount = borrowCount;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(Integer id) {
+		this.id = id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public void setAuthor(String author) {
+		this.author = author;
+	}
+
+	public Integer getReleaseYear() {
+		return releaseYear;
+	}
+
+	public void setReleaseYear(Integer releaseYear) {
+		this.releaseYear = releaseYear;
+	}
+
+	public long getBorrowCount() {
+		return borrowCount;
+	}
+
+	public void setBorrowCount(long borrowCount) {
+		this.borrowCount = borrowCount;
+	}
+}
@@ -0,0 +1,33 @@
+package ru.batorov.library.dto.book;
+
+import java.util.Collection;
+
+public class BookSuggestionsDTO {
+	private Collection<String> titles;
+
+	private Collection<String> authors;
+
+	public BookSuggestionsDTO() {
+	}
+
+	public BookSuggestionsDTO(Collection<String> titles, Collection<String> authors) {
+		this.titles = titles;
+		this.authors = authors;
+	}
+
+	public Collection<String> getTitles() {
+		return titles;
+	}
+
+	public void setTitles(Collection<String> titles) {
+		this.titles = titles;
+	}
+
+	public Collection<String> getAuthors() {
+		return authors;
+	}
+
+	public void setAuthors(Collection<String> authors) {
+		this.authors = authors;
+	}
+}
@@ -18,6 +18,17 @@ public class BookUserDTO implements BookDTOInterface {
 	@Min(value = 0, message = "release_year > 0")
 	private Integer releaseYear;
 
+	public BookUserDTO() {
+	}
+
+	// used by JPQL constructor expressions
+	public BookUserDTO(Integer id, String title, String author, Integer releaseYear) {
+		this.id = id;
+		this.title = title;
+		this.author = author;
+		this.releaseYear = releaseYear;
+	}
+
 	public String getTitle() {
 		return title;
 	}
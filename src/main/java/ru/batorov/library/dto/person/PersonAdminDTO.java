@@ -20,6 +20,16 @@ public class PersonAdminDTO implements PersonDTOInterface {
 
 	Collection<RoleDTO> roles;
 
+	public PersonAdminDTO() {
+	}
+
+	public PersonAdminDTO(Integer id, String fullName, Integer yearOfBirth, Collection<RoleDTO> roles) {
+		this.id = id;
+		this.fullName = fullName;
+		this.yearOfBirth = yearOfBirth;
+		this.roles = roles;
+	}
+
 	public Integer getId() {
 		return id;
 	}
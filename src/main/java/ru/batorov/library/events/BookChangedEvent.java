@@ -0,0 +1,67 @@
+package ru.batorov.library.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by BookService when a book is changed. Listeners that keep
+ * in-memory views of the catalog should handle it after commit.
+ */
+public class BookChangedEvent {
+	public enum Type {
+		CREATED, UPDATED, DELETED, OWNER_CHANGED
+	}
+
+	private final Type type;
+	private final BookSnapshot before;
+	private final BookSnapshot after;
+	private final LocalDateTime changedAt;
+
+	/**
+	 * Create an event of a change made now.
+	 *
+	 * @param type   type of the change.
+	 * @param before state before the change, {@literal null} for created book.
+	 * @param after  state after the change, {@literal null} for deleted book.
+	 */
+	public BookChangedEvent(Type type, BookSnapshot before, BookSnapshot after) {
+		this(type, before, after, LocalDateTime.now());
+	}
+
+	/**
+	 * @param type      type of the change.
+	 * @param before    state before the change, {@literal null} for created
+	 *                  book.
+	 * @param after     state after the change, {@literal null} for deleted book.
+	 * @param changedAt time of the change as it is written to the database.
+	 */
+	public BookChangedEvent(Type type, BookSnapshot before, BookSnapshot after, LocalDateTime changedAt) {
+		this.type = type;
+		this.before = before;
+		this.after = after;
+		this.changedAt = changedAt;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Integer getBookId() {
+		return after != null ? after.getId() : before.getId();
+	}
+
+	public BookSnapshot getBefore() {
+		return before;
+	}
+
+	public BookSnapshot getAfter() {
+		return after;
+	}
+
+	/**
+	 * Return time of the change. Listeners after commit see it later than
+	 * it happened.
+	 */
+	public LocalDateTime getChangedAt() {
+		return changedAt;
+	}
+}
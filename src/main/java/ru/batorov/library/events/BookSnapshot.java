@@ -0,0 +1,79 @@
+package ru.batorov.library.events;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import ru.batorov.library.models.Book;
+import ru.batorov.library.models.Person;
+
+/**
+ * Immutable copy of the book's columns that doesn't depend on the
+ * persistence context.
+ */
+public final class BookSnapshot {
+	private final Integer id;
+	private final String title;
+	private final String author;
+	private final Integer releaseYear;
+	private final Integer ownerId;
+
+	public BookSnapshot(Integer id, String title, String author, Integer releaseYear, Integer ownerId) {
+		this.id = id;
+		this.title = title;
+		this.author = author;
+		this.releaseYear = releaseYear;
+		this.ownerId = ownerId;
+	}
+
+	/**
+	 * Return snapshot of the given book. Doesn't initialize lazy owner.
+	 * 
+	 * @param book must not be {@literal null}.
+	 * @return snapshot of the given book.
+	 */
+	public static BookSnapshot of(Book book) {
+		return new BookSnapshot(book.getId(), book.getTitle(), book.getAuthor(), book.getReleaseYear(),
+				ownerIdOf(book.getOwner()));
+	}
+
+	private static Integer ownerIdOf(Person owner) {
+		if (owner == null)
+			return null;
+		if (owner instanceof HibernateProxy proxy)
+			return (Integer) proxy.getHibernateLazyInitializer().getIdentifier();
+		return owner.getId();
+	}
+
+	/**
+	 * Return detached book with the snapshot's fields. Owner is not set.
+	 * 
+	 * @return detached book.
+	 */
+	public Book toBook() {
+		Book book = new Book();
+		book.setId(id);
+		book.setTitle(title);
+		book.setAuthor(author);
+		book.setReleaseYear(releaseYear);
+		return book;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	public Integer getReleaseYear() {
+		return releaseYear;
+	}
+
+	public Integer getOwnerId() {
+		return ownerId;
+	}
+}
@@ -0,0 +1,40 @@
+package ru.batorov.library.models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Usage counters of a book. There is no foreign key to the book, counters of
+ * a deleted book are skipped by queries that join books.
+ */
+@Entity
+@Table(name = "book_stats")
+public class BookStats {
+    @Id
+    @Column(name = "book_id")
+    private Integer bookId;
+
+    @Column(name = "borrow_count")
+    private long borrowCount;
+
+    public BookStats() {
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public void setBorrowCount(long borrowCount) {
+        this.borrowCount = borrowCount;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.batorov.library.models;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Mark of a deleted book, lets clients that sync changes remove it.
+ */
+@Entity
+@Table(name = "book_tombstone")
+public class BookTombstone {
+    @Id
+    @Column(name = "book_id")
+    private Integer bookId;
+
+    // set by the database, so it is comparable with book.updated_at
+    @Column(name = "deleted_at", insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
+    public BookTombstone() {
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.batorov.library.models;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Record of a book taken or returned. Records are only appended, they stay
+ * after the book or the person is deleted.
+ */
+@Entity
+@Table(name = "loan_event")
+public class LoanEvent {
+    public enum Kind {
+        TAKEN,
+        RETURNED
+    }
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id")
+    private Integer bookId;
+
+    @Column(name = "person_id")
+    private Integer personId;
+
+    @Column(name = "kind")
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    @Column(name = "happened_at")
+    private LocalDateTime happenedAt;
+
+    public LoanEvent() {
+    }
+
+    public LoanEvent(Integer bookId, Integer personId, Kind kind, LocalDateTime happenedAt) {
+        this.bookId = bookId;
+        this.personId = personId;
+        this.kind = kind;
+        this.happenedAt = happenedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getPersonId() {
+        return personId;
+    }
+
+    public void setPersonId(Integer personId) {
+        this.personId = personId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public LocalDateTime getHappenedAt() {
+        return happenedAt;
+    }
+
+    public void setHappenedAt(LocalDateTime happenedAt) {
+        this.happenedAt = happenedAt;
+    }
+}
@@ -1,12 +1,129 @@
 package ru.batorov.library.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import ru.batorov.library.dto.book.BookUserDTO;
 import ru.batorov.library.models.Book;
 
 
-public interface BookRepository extends JpaRepository<Book, Integer>{
+public interface BookRepository extends JpaRepository<Book, Integer>, BookRepositoryCustom {
+    // available = false matches books with and without owner
+    String FILTERED = "SELECT b FROM Book b WHERE (:available = false OR b.owner IS NULL) AND b.releaseYear BETWEEN :fromYear AND :toYear";
+    String FILTERED_USER_DTOS = "SELECT new ru.batorov.library.dto.book.BookUserDTO(b.id, b.title, b.author, b.releaseYear) "
+            + "FROM Book b WHERE (:available = false OR b.owner IS NULL) AND b.releaseYear BETWEEN :fromYear AND :toYear";
+
     List<Book> findByTitleContaining(String findRequest);
+
+    // read-only projection, books aren't loaded into the persistence context
+    @Query("SELECT new ru.batorov.library.dto.book.BookUserDTO(b.id, b.title, b.author, b.releaseYear) FROM Book b "
+            + "WHERE b.title LIKE %?#{escape([0])}% ESCAPE ?#{escapeCharacter()}")
+    List<BookUserDTO> findUserDTOsByTitleContaining(String findRequest);
+
+    // Slice doesn't issue count query unlike Page
+    Slice<Book> findAllBy(Pageable pageable);
+
+    // forward-only cursor, rows are fetched in batches instead of being loaded at once
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<Book> streamAll();
+
+    @Query("SELECT b FROM Book b ORDER BY b.releaseYear, b.id")
+    @QueryHints({ @QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true") })
+    Stream<Book> streamAllOrderByReleaseYear();
+
+    @Query(FILTERED_USER_DTOS + " ORDER BY b.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<BookUserDTO> streamUserDTOsFiltered(boolean available, int fromYear, int toYear);
+
+    @Query(FILTERED_USER_DTOS + " ORDER BY b.releaseYear, b.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<BookUserDTO> streamUserDTOsFilteredOrderByReleaseYear(boolean available, int fromYear, int toYear);
+
+    // takes the book only if it is free, the number of updated rows tells whether it was
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE book SET person_id = :personId, take_time = :takeTime WHERE id = :id AND person_id IS NULL", nativeQuery = true)
+    int checkout(int id, int personId, Date takeTime);
+
+    // rows are locked in the order of ids, so concurrent bulk loans can't deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids ORDER BY b.id")
+    List<Book> findAllByIdForUpdate(Collection<Integer> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE book SET person_id = :personId, take_time = :takeTime WHERE id IN (:ids) AND person_id IS NULL", nativeQuery = true)
+    int checkoutAll(Collection<Integer> ids, int personId, Date takeTime);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE book SET person_id = NULL WHERE id IN (:ids)", nativeQuery = true)
+    int releaseAll(Collection<Integer> ids);
+
+    @Query("SELECT b FROM Book b WHERE b.id > :id ORDER BY b.id")
+    List<Book> findAfterId(int id, Pageable pageable);
+
+    // first condition bounds the index range, the second one filters books with the same year
+    @Query("SELECT b FROM Book b WHERE b.releaseYear >= :releaseYear AND (b.releaseYear > :releaseYear OR b.id > :id) ORDER BY b.releaseYear, b.id")
+    List<Book> findAfterReleaseYearAndId(int releaseYear, int id, Pageable pageable);
+
+    @Query(FILTERED)
+    List<Book> findFiltered(boolean available, int fromYear, int toYear, Sort sort);
+
+    @Query(FILTERED)
+    List<Book> findFiltered(boolean available, int fromYear, int toYear, Pageable pageable);
+
+    @Query(FILTERED + " AND b.id > :id ORDER BY b.id")
+    List<Book> findFilteredAfterId(boolean available, int fromYear, int toYear, int id, Pageable pageable);
+
+    @Query(FILTERED + " AND b.releaseYear >= :releaseYear AND (b.releaseYear > :releaseYear OR b.id > :id) ORDER BY b.releaseYear, b.id")
+    List<Book> findFilteredAfterReleaseYearAndId(boolean available, int fromYear, int toYear, int releaseYear, int id,
+            Pageable pageable);
+
+    @Query("SELECT count(b) FROM Book b WHERE (:available = false OR b.owner IS NULL) AND b.releaseYear BETWEEN :fromYear AND :toYear")
+    long countFiltered(boolean available, int fromYear, int toYear);
+
+    // release_year - MOD(release_year, 10) instead of division, which isn't integer in MySQL
+    @Query("SELECT b.author AS author, b.releaseYear - MOD(b.releaseYear, 10) AS decade, COUNT(b) AS total, "
+            + "SUM(CASE WHEN b.owner IS NULL THEN 1 ELSE 0 END) AS available "
+            + "FROM Book b GROUP BY b.author, b.releaseYear - MOD(b.releaseYear, 10)")
+    List<FacetCount> countFacets();
+
+    @Query("SELECT b FROM Book b WHERE b.updated_at >= :since")
+    List<Book> findUpdatedSince(LocalDateTime since);
+
+    // first condition bounds the index range, the second one filters books changed at the same time
+    @Query("SELECT b FROM Book b WHERE b.updated_at >= :time AND (b.updated_at > :time OR b.id > :id) "
+            + "AND b.updated_at < :until ORDER BY b.updated_at, b.id")
+    List<Book> findChangedAfter(LocalDateTime time, int id, LocalDateTime until, Pageable pageable);
+
+    // updated_at is set by the database, so its clock is used to compare with it
+    @Query(value = "SELECT LOCALTIMESTAMP", nativeQuery = true)
+    LocalDateTime now();
+
+    interface FacetCount {
+        String getAuthor();
+
+        Integer getDecade();
+
+        long getTotal();
+
+        long getAvailable();
+    }
 }
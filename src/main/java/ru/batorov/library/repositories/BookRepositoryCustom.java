@@ -0,0 +1,13 @@
+package ru.batorov.library.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import ru.batorov.library.models.Book;
+
+public interface BookRepositoryCustom {
+    // unlike JpaSpecificationExecutor.findAll(spec, pageable) doesn't issue count query
+    List<Book> findAll(Specification<Book> specification, Sort sort, int limit);
+}
@@ -0,0 +1,36 @@
+package ru.batorov.library.repositories;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import ru.batorov.library.models.Book;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Book> findAll(Specification<Book> specification, Sort sort, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = builder.createQuery(Book.class);
+        Root<Book> book = query.from(Book.class);
+        query.select(book);
+        if (specification != null) {
+            Predicate predicate = specification.toPredicate(book, query, builder);
+            if (predicate != null)
+                query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, book, builder));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.batorov.library.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import ru.batorov.library.models.Book;
+
+/**
+ * Conditions for filtering books. Every condition is a separate
+ * specification, so a query contains only the predicates that were asked
+ * for.
+ */
+public final class BookSpecifications {
+    private static final char ESCAPE = '\\';
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> authorIs(String author) {
+        return (book, query, builder) -> builder.equal(book.get("author"), author);
+    }
+
+    // prefix LIKE is served by the index on author unlike a contains search
+    public static Specification<Book> authorStartsWith(String prefix) {
+        return (book, query, builder) -> builder.like(book.get("author"), escapeLike(prefix) + "%", ESCAPE);
+    }
+
+    public static Specification<Book> releaseYearFrom(int fromYear) {
+        return (book, query, builder) -> builder.greaterThanOrEqualTo(book.get("releaseYear"), fromYear);
+    }
+
+    public static Specification<Book> releaseYearTo(int toYear) {
+        return (book, query, builder) -> builder.lessThanOrEqualTo(book.get("releaseYear"), toYear);
+    }
+
+    public static Specification<Book> taken(boolean taken) {
+        return (book, query, builder) -> taken ? builder.isNotNull(book.get("owner"))
+                : builder.isNull(book.get("owner"));
+    }
+
+    // compares the foreign key, person isn't joined
+    public static Specification<Book> ownerIs(int ownerId) {
+        return (book, query, builder) -> builder.equal(book.get("owner").get("id"), ownerId);
+    }
+
+    public static Specification<Book> afterId(int id) {
+        return (book, query, builder) -> builder.greaterThan(book.get("id"), id);
+    }
+
+    // first condition bounds the index range, the second one filters books with the same year
+    public static Specification<Book> afterReleaseYearAndId(int releaseYear, int id) {
+        return (book, query, builder) -> builder.and(
+                builder.greaterThanOrEqualTo(book.get("releaseYear"), releaseYear),
+                builder.or(builder.greaterThan(book.get("releaseYear"), releaseYear),
+                        builder.greaterThan(book.get("id"), id)));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
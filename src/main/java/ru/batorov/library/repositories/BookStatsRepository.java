@@ -0,0 +1,43 @@
+package ru.batorov.library.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import ru.batorov.library.models.BookStats;
+
+public interface BookStatsRepository extends JpaRepository<BookStats, Integer> {
+    // returns 0 if the book has no counters yet
+    @Modifying
+    @Query(value = "UPDATE book_stats SET borrow_count = borrow_count + :count WHERE book_id = :bookId", nativeQuery = true)
+    int addBorrows(int bookId, long count);
+
+    @Modifying
+    @Query(value = "INSERT INTO book_stats(book_id, borrow_count) VALUES (:bookId, :count)", nativeQuery = true)
+    void insert(int bookId, long count);
+
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.releaseYear AS releaseYear, "
+            + "s.borrowCount AS borrowCount FROM BookStats s, Book b WHERE b.id = s.bookId "
+            + "ORDER BY s.borrowCount DESC, b.id")
+    List<PopularBook> findMostBorrowed(Pageable pageable);
+
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.releaseYear AS releaseYear, "
+            + "s.borrowCount AS borrowCount FROM BookStats s, Book b WHERE b.id = s.bookId AND s.bookId IN :bookIds")
+    List<PopularBook> findByBookIds(Collection<Integer> bookIds);
+
+    interface PopularBook {
+        Integer getId();
+
+        String getTitle();
+
+        String getAuthor();
+
+        Integer getReleaseYear();
+
+        long getBorrowCount();
+    }
+}
@@ -0,0 +1,25 @@
+package ru.batorov.library.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import ru.batorov.library.models.BookTombstone;
+
+public interface BookTombstoneRepository extends JpaRepository<BookTombstone, Integer> {
+    // deleted_at is filled by the database default
+    @Modifying
+    @Query(value = "INSERT INTO book_tombstone(book_id) VALUES (:bookId)", nativeQuery = true)
+    void insert(int bookId);
+
+    @Query("SELECT t FROM BookTombstone t WHERE t.deletedAt >= :time AND (t.deletedAt > :time OR t.bookId > :id) "
+            + "AND t.deletedAt < :until ORDER BY t.deletedAt, t.bookId")
+    List<BookTombstone> findDeletedAfter(LocalDateTime time, int id, LocalDateTime until, Pageable pageable);
+
+    @Query("SELECT t.bookId FROM BookTombstone t WHERE t.deletedAt >= :since")
+    List<Integer> findBookIdsDeletedSince(LocalDateTime since);
+}
@@ -0,0 +1,12 @@
+package ru.batorov.library.repositories;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import ru.batorov.library.models.LoanEvent;
+
+public interface LoanEventRepository extends JpaRepository<LoanEvent, Long>, LoanEventRepositoryCustom {
+    List<LoanEvent> findByBookIdOrderByHappenedAtDescIdDesc(Integer bookId, Pageable pageable);
+}
@@ -0,0 +1,10 @@
+package ru.batorov.library.repositories;
+
+import java.util.List;
+
+import ru.batorov.library.models.LoanEvent;
+
+public interface LoanEventRepositoryCustom {
+    // all events are inserted by one multi-row statement, ids of the given events aren't set
+    void insertAll(List<LoanEvent> events);
+}
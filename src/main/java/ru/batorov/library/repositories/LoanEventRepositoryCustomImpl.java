@@ -0,0 +1,35 @@
+package ru.batorov.library.repositories;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import ru.batorov.library.models.LoanEvent;
+
+public class LoanEventRepositoryCustomImpl implements LoanEventRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertAll(List<LoanEvent> events) {
+        if (events.isEmpty())
+            return;
+        StringBuilder sql = new StringBuilder("INSERT INTO loan_event(book_id, person_id, kind, happened_at) VALUES ");
+        for (int i = 0; i < events.size(); i++)
+            sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+        Query query = entityManager.createNativeQuery(sql.toString());
+        int parameter = 1;
+        for (LoanEvent event : events) {
+            query.setParameter(parameter++, event.getBookId());
+            query.setParameter(parameter++, event.getPersonId());
+            query.setParameter(parameter++, event.getKind().name());
+            query.setParameter(parameter++, event.getHappenedAt());
+        }
+        query.executeUpdate();
+    }
+}
@@ -1,18 +1,38 @@
 package ru.batorov.library.repositories;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import ru.batorov.library.models.Person;
 
-public interface PeopleRepository extends JpaRepository<Person, Integer>{
+public interface PeopleRepository extends JpaRepository<Person, Integer>, PeopleRepositoryCustom {
+    // one row per role of every person, without loading entities
+    String PERSON_ROLE_ROWS = "SELECT p.id AS id, p.fullName AS fullName, p.yearOfBirth AS yearOfBirth, r.name AS roleName "
+            + "FROM Person p LEFT JOIN p.roles r ORDER BY p.id";
+
     List<Person> findByFullName(String name);
     Optional<Person> findByUsername(String username);
     @Query("SELECT DISTINCT p FROM Person p LEFT JOIN FETCH p.roles")
     List<Person> findAllWithRoles();
+
+    @Query(PERSON_ROLE_ROWS)
+    List<PersonRoleRow> findAllPersonRoleRows();
+
+    // forward-only cursor, rows are fetched in batches
+    @Query(PERSON_ROLE_ROWS)
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<PersonRoleRow> streamAllPersonRoleRows();
     
     @Query(
         value = "SELECT distinct p.id, p.username, r.id, r.name from person p left join person_role pr on p.id = pr.person_id LEFT JOIN role r on r.id = pr.role_id where p.id = :personId",
@@ -20,4 +40,49 @@ public interface PeopleRepository extends JpaRepository<Person, Integer>{
     )
     @Deprecated
     Person getAuthenticationsInformation(Integer personId);
+
+    // sums change when a person is added, deleted or its version is bumped
+    @Query("SELECT COUNT(p) AS count, SUM(p.id) AS idSum, SUM(p.version) AS versionSum, MAX(p.updated_at) AS updatedAt "
+            + "FROM Person p")
+    PeopleVersion findPeopleVersion();
+
+    // books of the person are a part of its representation, expired depends on the current time
+    @Query("SELECT p.version AS version, p.updated_at AS updatedAt, COUNT(b) AS bookCount, SUM(b.id) AS bookIdSum, "
+            + "MAX(b.updated_at) AS booksUpdatedAt, SUM(CASE WHEN b.takeTime < :expiredBefore THEN 1 ELSE 0 END) AS expiredCount "
+            + "FROM Person p LEFT JOIN p.books b WHERE p.id = :id GROUP BY p.id, p.version, p.updated_at")
+    Optional<PersonVersion> findVersionById(int id, Date expiredBefore);
+
+    interface PeopleVersion {
+        long getCount();
+
+        Long getIdSum();
+
+        Long getVersionSum();
+
+        LocalDateTime getUpdatedAt();
+    }
+
+    interface PersonVersion {
+        Integer getVersion();
+
+        LocalDateTime getUpdatedAt();
+
+        long getBookCount();
+
+        Long getBookIdSum();
+
+        LocalDateTime getBooksUpdatedAt();
+
+        Long getExpiredCount();
+    }
+
+    interface PersonRoleRow {
+        Integer getId();
+
+        String getFullName();
+
+        Integer getYearOfBirth();
+
+        String getRoleName();
+    }
 }
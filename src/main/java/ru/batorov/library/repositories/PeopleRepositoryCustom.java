@@ -0,0 +1,11 @@
+package ru.batorov.library.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import ru.batorov.library.models.Person;
+
+public interface PeopleRepositoryCustom {
+    // only the given attributes are selected, other attributes of the returned people are null
+    List<Person> findAllWithAttributes(Collection<String> attributes);
+}
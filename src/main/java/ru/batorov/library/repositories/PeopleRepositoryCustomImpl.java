@@ -0,0 +1,41 @@
+package ru.batorov.library.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+
+import ru.batorov.library.models.Person;
+
+public class PeopleRepositoryCustomImpl implements PeopleRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Person> findAllWithAttributes(Collection<String> attributes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Person> person = query.from(Person.class);
+        query.multiselect(attributes.stream().<Selection<?>>map(attribute -> person.get(attribute).alias(attribute)).toList());
+        query.orderBy(builder.asc(person.get("id")));
+        return entityManager.createQuery(query).getResultStream().map(PeopleRepositoryCustomImpl::toPerson).toList();
+    }
+
+    private static Person toPerson(Tuple tuple) {
+        Person person = new Person();
+        BeanWrapper wrapper = new BeanWrapperImpl(person);
+        for (TupleElement<?> element : tuple.getElements())
+            wrapper.setPropertyValue(element.getAlias(), tuple.get(element));
+        return person;
+    }
+}
@@ -0,0 +1,219 @@
+package ru.batorov.library.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+
+import ru.batorov.library.events.BookSnapshot;
+
+/**
+ * Disk based full-text index over book titles and authors. Changes become
+ * visible to searches right after {@link #refresh()}, durable after
+ * {@link #commit()}.
+ */
+public class BookLuceneIndex implements Closeable {
+	private static final String ID = "id";
+	private static final String TITLE = "title";
+	private static final String AUTHOR = "author";
+	private static final String RELEASE_YEAR = "releaseYear";
+	private static final float TITLE_BOOST = 2f;
+	private static final float EXACT_BOOST = 2f;
+
+	private final Analyzer analyzer = new StandardAnalyzer();
+	private final FSDirectory directory;
+	private final IndexWriter writer;
+	private final SearcherManager searcherManager;
+
+	/**
+	 * Open existing index in the given directory or create a new one.
+	 *
+	 * @param path directory of the index.
+	 * @throws IOException if the index can't be opened.
+	 */
+	public BookLuceneIndex(Path path) throws IOException {
+		directory = FSDirectory.open(path);
+		writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+		searcherManager = new SearcherManager(writer, null);
+	}
+
+	/**
+	 * Add or replace the given book.
+	 *
+	 * @param book must not be {@literal null}.
+	 */
+	public void put(BookSnapshot book) {
+		try {
+			writer.updateDocument(new Term(ID, book.getId().toString()), toDocument(book));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Remove the book with the given id.
+	 *
+	 * @param bookId must not be {@literal null}.
+	 */
+	public void remove(Integer bookId) {
+		try {
+			writer.deleteDocuments(new Term(ID, bookId.toString()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Replace the whole index with the given books. Searches see the old
+	 * index until the replacement is committed.
+	 *
+	 * @param books all books of the catalog.
+	 */
+	public void replaceAll(Iterable<BookSnapshot> books) {
+		try {
+			writer.deleteAll();
+			for (BookSnapshot book : books)
+				writer.addDocument(toDocument(book));
+			commit();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void refresh() {
+		try {
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void commit() {
+		try {
+			writer.commit();
+			searcherManager.maybeRefresh();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Return books matching the request ordered by relevance. Every word of
+	 * the request is matched against title and author, allowing typos and
+	 * unfinished words.
+	 *
+	 * @param request      must not be {@literal null}.
+	 * @param page         zero-based page index.
+	 * @param itemsPerPage the size of the page to be returned.
+	 * @return books on the required page.
+	 */
+	public List<BookSnapshot> search(String request, int page, int itemsPerPage) {
+		Query query = parse(request);
+		List<BookSnapshot> result = new ArrayList<>();
+		if (query == null)
+			return result;
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				// in long, so that a far page is empty instead of an overflow
+				long from = (long) page * itemsPerPage;
+				TopDocs topDocs = searcher.search(query, (int) Math.min(from + itemsPerPage, Integer.MAX_VALUE));
+				ScoreDoc[] hits = topDocs.scoreDocs;
+				if (from >= hits.length)
+					return result;
+				for (int i = (int) from; i < hits.length; i++)
+					result.add(fromDocument(searcher.storedFields().document(hits[i].doc)));
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return result;
+	}
+
+	private Query parse(String request) {
+		BooleanQuery.Builder query = new BooleanQuery.Builder();
+		boolean empty = true;
+		try (TokenStream tokens = analyzer.tokenStream(TITLE, request)) {
+			CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+			tokens.reset();
+			while (tokens.incrementToken()) {
+				query.add(wordQuery(term.toString()), Occur.SHOULD);
+				empty = false;
+			}
+			tokens.end();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return empty ? null : query.build();
+	}
+
+	private static Query wordQuery(String word) {
+		BooleanQuery.Builder query = new BooleanQuery.Builder();
+		for (String field : new String[] { TITLE, AUTHOR }) {
+			float boost = field.equals(TITLE) ? TITLE_BOOST : 1f;
+			Term term = new Term(field, word);
+			query.add(new BoostQuery(new TermQuery(term), boost * EXACT_BOOST), Occur.SHOULD);
+			query.add(new BoostQuery(new FuzzyQuery(term, maxEdits(word)), boost), Occur.SHOULD);
+			query.add(new BoostQuery(new PrefixQuery(term), boost), Occur.SHOULD);
+		}
+		return query.build();
+	}
+
+	// short words with typos match too many unrelated words
+	private static int maxEdits(String word) {
+		return word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+	}
+
+	private static Document toDocument(BookSnapshot book) {
+		Document document = new Document();
+		document.add(new StringField(ID, book.getId().toString(), Field.Store.YES));
+		document.add(new TextField(TITLE, book.getTitle(), Field.Store.YES));
+		document.add(new TextField(AUTHOR, book.getAuthor(), Field.Store.YES));
+		if (book.getReleaseYear() != null)
+			document.add(new StoredField(RELEASE_YEAR, book.getReleaseYear()));
+		return document;
+	}
+
+	private static BookSnapshot fromDocument(Document document) {
+		Number releaseYear = document.getField(RELEASE_YEAR) == null ? null
+				: document.getField(RELEASE_YEAR).numericValue();
+		return new BookSnapshot(Integer.valueOf(document.get(ID)), document.get(TITLE), document.get(AUTHOR),
+				releaseYear == null ? null : releaseYear.intValue(), null);
+	}
+
+	@Override
+	public void close() throws IOException {
+		searcherManager.close();
+		writer.close();
+		directory.close();
+	}
+}
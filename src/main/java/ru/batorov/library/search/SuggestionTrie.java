@@ -0,0 +1,172 @@
+package ru.batorov.library.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed (radix) trie of weighted phrases. Every node keeps the top
+ * phrases of its subtree, so completion of a prefix costs only a walk down
+ * the trie. Matching is case insensitive.
+ */
+public class SuggestionTrie {
+	private static final Comparator<Node> BY_WEIGHT = Comparator.comparingInt((Node node) -> node.weight).reversed()
+			.thenComparing(node -> node.phrase);
+
+	private final int topSize;
+	private final Node root = new Node("");
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * @param topSize number of completions kept for every prefix.
+	 */
+	public SuggestionTrie(int topSize) {
+		this.topSize = topSize;
+	}
+
+	/**
+	 * Change weight of the phrase. Phrase is removed when its weight drops to
+	 * zero.
+	 *
+	 * @param phrase must not be {@literal null}.
+	 * @param delta  weight to add, may be negative.
+	 */
+	public void add(String phrase, int delta) {
+		lock.writeLock().lock();
+		try {
+			add(root, key(phrase), phrase, delta);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Return the heaviest phrases that start with the given prefix.
+	 *
+	 * @param prefix must not be {@literal null}.
+	 * @return at most topSize phrases, heaviest first.
+	 */
+	public List<String> complete(String prefix) {
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			String rest = key(prefix);
+			while (!rest.isEmpty()) {
+				Node child = node.children.get(rest.charAt(0));
+				if (child == null)
+					return List.of();
+				int common = commonPrefix(child.edge, rest);
+				if (common == rest.length())
+					return phrases(child);
+				if (common < child.edge.length())
+					return List.of();
+				rest = rest.substring(common);
+				node = child;
+			}
+			return phrases(node);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void add(Node node, String rest, String phrase, int delta) {
+		if (rest.isEmpty()) {
+			if (node.phrase == null)
+				node.phrase = phrase;
+			node.weight += delta;
+			if (node.weight <= 0) {
+				node.weight = 0;
+				node.phrase = null;
+			}
+		} else {
+			char first = rest.charAt(0);
+			Node child = node.children.get(first);
+			if (child == null) {
+				if (delta <= 0)
+					return;
+				child = new Node(rest);
+				node.children.put(first, child);
+			} else {
+				int common = commonPrefix(child.edge, rest);
+				if (common < child.edge.length()) {
+					if (delta <= 0)
+						return;
+					child = split(node, child, common);
+				}
+			}
+			add(child, rest.substring(child.edge.length()), phrase, delta);
+			compact(node, first);
+		}
+		updateTop(node);
+	}
+
+	// splits the edge to the child, so that its first part has the given length
+	private static Node split(Node parent, Node child, int length) {
+		Node middle = new Node(child.edge.substring(0, length));
+		child.edge = child.edge.substring(length);
+		middle.children.put(child.edge.charAt(0), child);
+		parent.children.put(middle.edge.charAt(0), middle);
+		return middle;
+	}
+
+	// removes empty child or merges it with its only child
+	private static void compact(Node parent, char first) {
+		Node child = parent.children.get(first);
+		if (child.phrase != null)
+			return;
+		if (child.children.isEmpty())
+			parent.children.remove(first);
+		else if (child.children.size() == 1) {
+			Node grandchild = child.children.values().iterator().next();
+			grandchild.edge = child.edge + grandchild.edge;
+			parent.children.put(first, grandchild);
+		}
+	}
+
+	private void updateTop(Node node) {
+		List<Node> candidates = new ArrayList<>();
+		if (node.phrase != null)
+			candidates.add(node);
+		for (Node child : node.children.values())
+			for (Node top : child.top)
+				candidates.add(top);
+		candidates.sort(BY_WEIGHT);
+		node.top = candidates.subList(0, Math.min(topSize, candidates.size())).toArray(new Node[0]);
+	}
+
+	private static List<String> phrases(Node node) {
+		List<String> result = new ArrayList<>(node.top.length);
+		for (Node top : node.top)
+			result.add(top.phrase);
+		return result;
+	}
+
+	private static String key(String phrase) {
+		return phrase.toLowerCase(Locale.ROOT);
+	}
+
+	private static int commonPrefix(String first, String second) {
+		int length = Math.min(first.length(), second.length());
+		int i = 0;
+		while (i < length && first.charAt(i) == second.charAt(i))
+			i++;
+		return i;
+	}
+
+	private static class Node {
+		private String edge;
+		private String phrase;
+		private int weight;
+		private final Map<Character, Node> children = new HashMap<>();
+		private Node[] top = new Node[0];
+
+		private Node(String edge) {
+			this.edge = edge;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package ru.batorov.library.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.batorov.library.events.BookSnapshot;
+
+/**
+ * Inverted index from title trigrams to books. Answers the same case
+ * sensitive substring queries as {@code title LIKE '%request%'}.
+ * <p>
+ * Reads are lock free, writes are serialized.
+ */
+public class TrigramIndex {
+	private static final int GRAM = 3;
+
+	private final Map<Long, Set<Integer>> postings = new ConcurrentHashMap<>();
+	private final Map<Integer, BookSnapshot> books = new ConcurrentHashMap<>();
+
+	/**
+	 * Add or replace the given book.
+	 * 
+	 * @param book must not be {@literal null}.
+	 */
+	public synchronized void put(BookSnapshot book) {
+		remove(book.getId());
+		books.put(book.getId(), book);
+		for (long trigram : trigrams(book.getTitle()))
+			postings.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(book.getId());
+	}
+
+	/**
+	 * Remove the book with the given id. If the book is not indexed it is
+	 * silently ignored.
+	 * 
+	 * @param bookId must not be {@literal null}.
+	 */
+	public synchronized void remove(Integer bookId) {
+		BookSnapshot old = books.remove(bookId);
+		if (old == null)
+			return;
+		for (long trigram : trigrams(old.getTitle())) {
+			Set<Integer> ids = postings.get(trigram);
+			if (ids != null) {
+				ids.remove(bookId);
+				if (ids.isEmpty())
+					postings.remove(trigram);
+			}
+		}
+	}
+
+	/**
+	 * Return books which title contains the given string ordered by id.
+	 * 
+	 * @param request must not be {@literal null}.
+	 * @return books which title contains the request.
+	 */
+	public List<BookSnapshot> search(String request) {
+		Collection<Integer> candidates = request.length() < GRAM ? books.keySet() : smallestPosting(request);
+		List<BookSnapshot> result = new ArrayList<>();
+		for (Integer id : candidates) {
+			BookSnapshot book = books.get(id);
+			// candidates only share a trigram with the request, so check the whole string
+			if (book != null && book.getTitle() != null && book.getTitle().contains(request))
+				result.add(book);
+		}
+		result.sort(Comparator.comparing(BookSnapshot::getId));
+		return result;
+	}
+
+	public int size() {
+		return books.size();
+	}
+
+	private Collection<Integer> smallestPosting(String request) {
+		Set<Integer> smallest = null;
+		for (long trigram : trigrams(request)) {
+			Set<Integer> ids = postings.get(trigram);
+			if (ids == null)
+				return Set.of();
+			if (smallest == null || ids.size() < smallest.size())
+				smallest = ids;
+		}
+		return smallest;
+	}
+
+	private static long[] trigrams(String text) {
+		if (text == null || text.length() < GRAM)
+			return new long[0];
+		long[] result = new long[text.length() - GRAM + 1];
+		for (int i = 0; i < result.length; i++)
+			result[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+		return result;
+	}
+}
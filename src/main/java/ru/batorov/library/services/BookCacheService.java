@@ -0,0 +1,116 @@
+package ru.batorov.library.services;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import ru.batorov.library.dto.CacheStatsDTO;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.models.Book;
+import ru.batorov.library.models.Person;
+
+/**
+ * Bounded cache of books with their owners. Stores detached copies and
+ * returns a new copy on every read, so callers are free to modify the
+ * result.
+ */
+@Service
+public class BookCacheService {
+    private final Cache<Integer, Book> cache;
+
+    public BookCacheService(@Value("${library.cache.books.max-size:10000}") long maxSize,
+            @Value("${library.cache.books.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Return copy of the cached book, loading it if absent.
+     *
+     * @param bookId must not be {@literal null}.
+     * @param loader returns book with initialized owner or {@literal null} if
+     *               the book doesn't exist.
+     * @return copy of the book with the copy of its owner, {@literal null} if
+     *         the book doesn't exist.
+     */
+    public Book get(Integer bookId, Function<Integer, Book> loader) {
+        Book cached = cache.get(bookId, id -> {
+            Book book = loader.apply(id);
+            return book == null ? null : copy(book);
+        });
+        return cached == null ? null : copy(cached);
+    }
+
+    /**
+     * Invalidate all books after the current transaction commits. Cached
+     * books contain copies of their owners, so they are stale once any
+     * person changes.
+     */
+    public void invalidateAllAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidateAll();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * Return statistics of the cache since startup.
+     *
+     * @return statistics of the cache.
+     */
+    public CacheStatsDTO stats() {
+        CacheStats stats = cache.stats();
+        CacheStatsDTO result = new CacheStatsDTO();
+        result.setSize(cache.estimatedSize());
+        result.setHitCount(stats.hitCount());
+        result.setMissCount(stats.missCount());
+        result.setHitRate(stats.hitRate());
+        result.setEvictionCount(stats.evictionCount());
+        return result;
+    }
+
+    // loads started before the commit finish before invalidation, see Cache.invalidate; runs before the
+    // catalog version is bumped, so a page cached under the new version isn't rendered from an old book
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() != BookChangedEvent.Type.CREATED)
+            cache.invalidate(event.getBookId());
+    }
+
+    private static Book copy(Book book) {
+        Book result = Book.shallowCopy(book);
+        Person owner = book.getOwner();
+        if (owner != null) {
+            Person ownerCopy = new Person();
+            ownerCopy.setId(owner.getId());
+            ownerCopy.setUsername(owner.getUsername());
+            ownerCopy.setFullName(owner.getFullName());
+            ownerCopy.setYearOfBirth(owner.getYearOfBirth());
+            ownerCopy.setVersion(owner.getVersion());
+            ownerCopy.setUpdated_at(owner.getUpdated_at());
+            result.setOwner(ownerCopy);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.batorov.library.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.repositories.BookRepository;
+
+/**
+ * Keeps the total number of books so that paged requests don't need to
+ * count the table.
+ */
+@Service
+public class BookCountService {
+    private static final long NOT_SEEDED = -1;
+
+    private final BookRepository bookRepository;
+    private final AtomicLong count = new AtomicLong(NOT_SEEDED);
+
+    public BookCountService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        count.compareAndSet(NOT_SEEDED, bookRepository.count());
+    }
+
+    /**
+     * Return total number of books.
+     * 
+     * @return total number of books.
+     */
+    public long get() {
+        if (count.get() == NOT_SEEDED)
+            seed();
+        return count.get();
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.CREATED)
+            count.getAndUpdate(value -> value == NOT_SEEDED ? value : value + 1);
+        else if (event.getType() == BookChangedEvent.Type.DELETED)
+            count.getAndUpdate(value -> value == NOT_SEEDED ? value : value - 1);
+    }
+}
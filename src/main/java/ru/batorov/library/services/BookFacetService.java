@@ -0,0 +1,142 @@
+package ru.batorov.library.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.dto.book.BookFacetDTO;
+import ru.batorov.library.dto.book.BookFacetsDTO;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookRepository;
+
+/**
+ * Keeps number of books and available books per author and per decade of
+ * release, so that facets don't need to aggregate the catalog. Counters are
+ * seeded by a grouped query and then changed by every BookChangedEvent.
+ * Changes that commit while the query runs are kept and applied after it.
+ */
+@Service
+public class BookFacetService {
+    private static final Comparator<BookFacetDTO> BY_COUNT = Comparator.comparingLong(BookFacetDTO::getCount)
+            .reversed().thenComparing(BookFacetDTO::getValue);
+
+    private final BookRepository bookRepository;
+    private final Map<String, Counter> authors = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> decades = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    // changes that came while the seeding query was running, null when it isn't running
+    private List<BookChangedEvent> pending;
+    private volatile boolean seeded;
+
+    public BookFacetService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void seed() {
+        if (seeded)
+            return;
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+        List<BookRepository.FacetCount> rows;
+        try {
+            rows = bookRepository.countFacets();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                pending = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            for (BookRepository.FacetCount row : rows) {
+                authors.computeIfAbsent(row.getAuthor(), author -> new Counter()).add(row.getTotal(),
+                        row.getAvailable());
+                decades.computeIfAbsent(row.getDecade(), decade -> new Counter()).add(row.getTotal(),
+                        row.getAvailable());
+            }
+            pending.forEach(this::apply);
+            pending = null;
+            seeded = true;
+        }
+    }
+
+    /**
+     * Return number of books and available books per author, most prolific
+     * authors first, and per decade of release in ascending order.
+     *
+     * @return facets of the catalog.
+     */
+    public BookFacetsDTO facets() {
+        if (!seeded)
+            seed();
+        List<BookFacetDTO> authorFacets = authors.entrySet().stream()
+                .map(entry -> entry.getValue().toFacet(entry.getKey()))
+                .filter(facet -> facet.getCount() > 0)
+                .sorted(BY_COUNT)
+                .toList();
+        List<BookFacetDTO> decadeFacets = decades.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> entry.getValue().toFacet(entry.getKey().toString()))
+                .filter(facet -> facet.getCount() > 0)
+                .toList();
+        return new BookFacetsDTO(authorFacets, decadeFacets);
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (!seeded) {
+            synchronized (lock) {
+                if (!seeded) {
+                    // changes committed before seeding started are counted by the seeding query, the ones
+                    // that come while it runs may commit after it has read the rows
+                    if (pending != null)
+                        pending.add(event);
+                    return;
+                }
+            }
+        }
+        apply(event);
+    }
+
+    private void apply(BookChangedEvent event) {
+        count(event.getBefore(), -1);
+        count(event.getAfter(), 1);
+    }
+
+    private void count(BookSnapshot book, int delta) {
+        if (book == null)
+            return;
+        int available = book.getOwnerId() == null ? delta : 0;
+        authors.computeIfAbsent(book.getAuthor(), author -> new Counter()).add(delta, available);
+        decades.computeIfAbsent(decade(book.getReleaseYear()), decade -> new Counter()).add(delta, available);
+    }
+
+    private static int decade(int releaseYear) {
+        return releaseYear - releaseYear % 10;
+    }
+
+    // LongAdder spreads concurrent updates of popular authors over several cells
+    private static class Counter {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder available = new LongAdder();
+
+        private void add(long totalDelta, long availableDelta) {
+            total.add(totalDelta);
+            available.add(availableDelta);
+        }
+
+        private BookFacetDTO toFacet(String value) {
+            return new BookFacetDTO(value, total.sum(), available.sum());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package ru.batorov.library.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
+
+import org.hibernate.Session;
+import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import ru.batorov.library.dto.book.BookCreationDTO;
+import ru.batorov.library.dto.book.BookImportProgressDTO;
+import ru.batorov.library.dto.book.BookImportRejectDTO;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.models.Book;
+import ru.batorov.library.util.CsvReader;
+import ru.batorov.library.util.DTOConvert;
+import ru.batorov.library.util.exceptions.ErrorsGetter;
+
+/**
+ * Imports books from files of any size. Rows are read one by one, validated
+ * like books created by admins and inserted in JDBC batches, every batch in
+ * its own transaction. Only one batch is kept in memory, batches inserted
+ * before a failure stay imported.
+ */
+@Service
+public class BookImportService {
+    private static final Logger log = LoggerFactory.getLogger(BookImportService.class);
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SpringValidatorAdapter validator;
+    private final ModelMapper modelMapper;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public BookImportService(EntityManager entityManager, PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher, Validator validator, ModelMapper modelMapper,
+            ObjectMapper objectMapper, @Value("${library.import.batch-size:500}") int batchSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.validator = new SpringValidatorAdapter(validator);
+        this.modelMapper = modelMapper;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Import books from ndjson, one BookCreationDTO per line.
+     *
+     * @param in         must not be {@literal null}.
+     * @param onRejected gets every row that wasn't imported, must not be
+     *                   {@literal null}.
+     * @param onProgress gets the progress after every batch and at the end,
+     *                   must not be {@literal null}.
+     * @return the final progress.
+     * @throws IOException if the file can't be read.
+     */
+    public BookImportProgressDTO importNdjson(InputStream in, Consumer<BookImportRejectDTO> onRejected,
+            Consumer<BookImportProgressDTO> onProgress) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ObjectReader bookReader = objectMapper.readerFor(BookCreationDTO.class);
+        Batch batch = new Batch(onRejected, onProgress);
+        long line = 0;
+        String row;
+        while ((row = reader.readLine()) != null) {
+            line++;
+            if (row.isBlank())
+                continue;
+            try {
+                batch.add(line, bookReader.readValue(row));
+            } catch (JsonProcessingException e) {
+                batch.reject(line, "row isn't a valid book json;");
+            }
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Import books from csv with a header. Columns are found by the names
+     * title, author and releaseYear, other columns like id of the export are
+     * ignored.
+     *
+     * @param in         must not be {@literal null}.
+     * @param onRejected gets every row that wasn't imported, must not be
+     *                   {@literal null}.
+     * @param onProgress gets the progress after every batch and at the end,
+     *                   must not be {@literal null}.
+     * @return the final progress.
+     * @throws IOException              if the file can't be read.
+     * @throws IllegalArgumentException if a column is missing or a field is too
+     *                                  long.
+     */
+    public BookImportProgressDTO importCsv(InputStream in, Consumer<BookImportRejectDTO> onRejected,
+            Consumer<BookImportProgressDTO> onProgress) throws IOException {
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        Batch batch = new Batch(onRejected, onProgress);
+        List<String> header = reader.next();
+        if (header == null)
+            return batch.finish();
+        int title = header.indexOf("title");
+        int author = header.indexOf("author");
+        int releaseYear = header.indexOf("releaseYear");
+        if (title < 0 || author < 0 || releaseYear < 0)
+            throw new IllegalArgumentException("csv header should contain title, author and releaseYear");
+        List<String> row;
+        while ((row = reader.next()) != null) {
+            if (row.size() != header.size()) {
+                batch.reject(reader.getLine(), "row should have " + header.size() + " fields;");
+                continue;
+            }
+            BookCreationDTO book = new BookCreationDTO();
+            book.setTitle(row.get(title));
+            book.setAuthor(row.get(author));
+            try {
+                book.setReleaseYear(Integer.valueOf(row.get(releaseYear).trim()));
+            } catch (NumberFormatException e) {
+                batch.reject(reader.getLine(), "releaseYear - should be a number;");
+                continue;
+            }
+            batch.add(reader.getLine(), book);
+        }
+        return batch.finish();
+    }
+
+    private void insert(List<Book> books) {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            LocalDateTime now = LocalDateTime.now();
+            for (Book book : books) {
+                book.setCreated_at(now);
+                book.setUpdated_at(now);
+                entityManager.persist(book);
+                eventPublisher.publishEvent(
+                        new BookChangedEvent(BookChangedEvent.Type.CREATED, null, BookSnapshot.of(book)));
+            }
+        });
+    }
+
+    private class Batch {
+        private final Consumer<BookImportRejectDTO> onRejected;
+        private final Consumer<BookImportProgressDTO> onProgress;
+        private final List<Book> books = new ArrayList<>(batchSize);
+        private long read;
+        private long imported;
+        private long rejected;
+
+        private Batch(Consumer<BookImportRejectDTO> onRejected, Consumer<BookImportProgressDTO> onProgress) {
+            this.onRejected = onRejected;
+            this.onProgress = onProgress;
+        }
+
+        private void add(long line, BookCreationDTO book) {
+            BindingResult bindingResult = new BeanPropertyBindingResult(book, "book");
+            validator.validate(book, bindingResult);
+            if (bindingResult.hasErrors()) {
+                reject(line, ErrorsGetter.getErrors(bindingResult));
+                return;
+            }
+            read++;
+            books.add(DTOConvert.converToBook(book, modelMapper));
+            if (books.size() >= batchSize)
+                flush();
+        }
+
+        private void reject(long line, String errors) {
+            read++;
+            rejected++;
+            onRejected.accept(new BookImportRejectDTO(line, errors));
+        }
+
+        private void flush() {
+            if (books.isEmpty())
+                return;
+            insert(books);
+            imported += books.size();
+            books.clear();
+            onProgress.accept(progress(false));
+        }
+
+        private BookImportProgressDTO finish() {
+            flush();
+            log.info("Imported {} books, {} rows rejected", imported, rejected);
+            BookImportProgressDTO progress = progress(true);
+            onProgress.accept(progress);
+            return progress;
+        }
+
+        private BookImportProgressDTO progress(boolean done) {
+            return new BookImportProgressDTO(read, imported, rejected, done);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ru.batorov.library.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ru.batorov.library.dto.book.BookPopularityDTO;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookStatsRepository;
+import ru.batorov.library.repositories.BookStatsRepository.PopularBook;
+
+/**
+ * Counts how many times books are borrowed and keeps the most borrowed ones.
+ * Checkouts only increment an in-memory counter, counters are added to
+ * book_stats periodically and on shutdown. The top is rebuilt after every
+ * flush from the previous top and the books borrowed since, so reading it
+ * never touches the database.
+ */
+@Service
+public class BookPopularityService {
+    private static final Logger log = LoggerFactory.getLogger(BookPopularityService.class);
+    private static final Comparator<BookPopularityDTO> BY_BORROWS = Comparator
+            .comparingLong(BookPopularityDTO::getBorrowCount).reversed().thenComparing(BookPopularityDTO::getId);
+    // ids in one IN list when counters are read back
+    private static final int CHUNK_SIZE = 500;
+
+    private final BookStatsRepository bookStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int topSize;
+    private final Duration flushInterval;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-stats-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // borrows since the last flush, an adder per book keeps checkouts of the same book from contending;
+    // only books borrowed since the last flush have an entry
+    private final Map<Integer, LongAdder> borrows = new ConcurrentHashMap<>();
+    // adders removed by the last flush, a checkout that got one just before the removal adds to it
+    private Map<Integer, LongAdder> retired = Map.of();
+    private volatile List<BookPopularityDTO> top = List.of();
+
+    public BookPopularityService(BookStatsRepository bookStatsRepository, PlatformTransactionManager transactionManager,
+            @Value("${library.popular.size:10}") int topSize,
+            @Value("${library.popular.flush-interval:1m}") Duration flushInterval) {
+        this.bookStatsRepository = bookStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topSize = topSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        top = mostBorrowedFromDatabase();
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Borrow counters weren't flushed", e);
+            }
+        }, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return the most borrowed books, the most borrowed first. Borrows since
+     * the last flush aren't counted yet.
+     *
+     * @return at most library.popular.size books.
+     */
+    public List<BookPopularityDTO> mostBorrowed() {
+        return top;
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() != BookChangedEvent.Type.OWNER_CHANGED)
+            return;
+        Integer owner = event.getAfter().getOwnerId();
+        if (owner == null || owner.equals(ownerId(event.getBefore())))
+            return;
+        borrows.computeIfAbsent(event.getBookId(), bookId -> new LongAdder()).increment();
+    }
+
+    private static Integer ownerId(BookSnapshot book) {
+        return book == null ? null : book.getOwnerId();
+    }
+
+    /**
+     * Add borrows counted since the last flush to book_stats and rebuild the
+     * top. Runs every library.popular.flush-interval. If counters can't be
+     * saved they are kept for the next flush.
+     */
+    public synchronized void flush() {
+        Map<Integer, Long> counts = new HashMap<>();
+        retired.forEach((bookId, adder) -> addCount(counts, bookId, adder.sumThenReset()));
+        // adders are taken out, so the map doesn't keep every book ever borrowed; a checkout after the
+        // removal starts a new adder, one that already had the old adder is read by the next flush
+        Map<Integer, LongAdder> removed = new HashMap<>();
+        for (Integer bookId : borrows.keySet()) {
+            LongAdder adder = borrows.remove(bookId);
+            if (adder != null) {
+                removed.put(bookId, adder);
+                addCount(counts, bookId, adder.sumThenReset());
+            }
+        }
+        retired = removed;
+        if (counts.isEmpty())
+            return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> counts.forEach((bookId, count) -> {
+                if (bookStatsRepository.addBorrows(bookId, count) == 0)
+                    bookStatsRepository.insert(bookId, count);
+            }));
+        } catch (RuntimeException e) {
+            counts.forEach((bookId, count) -> borrows.computeIfAbsent(bookId, id -> new LongAdder()).add(count));
+            log.warn("Borrow counters of {} books weren't saved, they are kept for the next flush", counts.size(), e);
+            return;
+        }
+        top = rebuildTop(counts.keySet());
+    }
+
+    private static void addCount(Map<Integer, Long> counts, Integer bookId, long count) {
+        if (count > 0)
+            counts.merge(bookId, count, Long::sum);
+    }
+
+    // only books of the top and books borrowed since the last flush can be in the new top
+    private List<BookPopularityDTO> rebuildTop(Set<Integer> borrowed) {
+        Set<Integer> previous = new HashSet<>();
+        top.forEach(book -> previous.add(book.getId()));
+        Set<Integer> candidates = new HashSet<>(borrowed);
+        candidates.addAll(previous);
+        List<Integer> ids = new ArrayList<>(candidates);
+        int previousFound = 0;
+        // the worst of the top is at the head
+        PriorityQueue<BookPopularityDTO> heap = new PriorityQueue<>(topSize + 1, BY_BORROWS.reversed());
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size()));
+            for (PopularBook book : bookStatsRepository.findByBookIds(chunk)) {
+                if (previous.contains(book.getId()))
+                    previousFound++;
+                heap.add(toDTO(book));
+                if (heap.size() > topSize)
+                    heap.poll();
+            }
+        }
+        // a deleted book leaves a place that a book outside the candidates may take
+        if (heap.size() < topSize || previousFound < previous.size())
+            return mostBorrowedFromDatabase();
+        List<BookPopularityDTO> result = new ArrayList<>(heap);
+        result.sort(BY_BORROWS);
+        return List.copyOf(result);
+    }
+
+    private List<BookPopularityDTO> mostBorrowedFromDatabase() {
+        return bookStatsRepository.findMostBorrowed(PageRequest.of(0, topSize)).stream()
+                .map(BookPopularityService::toDTO).toList();
+    }
+
+    private static BookPopularityDTO toDTO(PopularBook book) {
+        return new BookPopularityDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getReleaseYear(),
+                book.getBorrowCount());
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.batorov.library.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.search.BookLuceneIndex;
+
+/**
+ * Keeps the full-text index of books on local disk. The index is reloaded
+ * from the database in background after startup, until then the index left
+ * by the previous run is searched.
+ */
+@Service
+public class BookRankedSearchService {
+    private static final Logger log = LoggerFactory.getLogger(BookRankedSearchService.class);
+
+    private final BookRepository bookRepository;
+    private final BookLuceneIndex index;
+    // changes that happened while the index was reloading
+    private final List<BookChangedEvent> pending = new ArrayList<>();
+    private boolean reloading = true;
+    // changes are made visible to searches on the next search, not after every one of them
+    private volatile boolean stale;
+
+    public BookRankedSearchService(BookRepository bookRepository,
+            @Value("${library.search.index-dir:lucene-index}") String indexDir) throws IOException {
+        this.bookRepository = bookRepository;
+        Path path = Path.of(indexDir);
+        Files.createDirectories(path);
+        this.index = new BookLuceneIndex(path);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                index.replaceAll(bookRepository.findAll().stream().map(BookSnapshot::of).toList());
+                log.info("Book full-text index is reloaded");
+            } catch (RuntimeException e) {
+                log.error("Book full-text index wasn't reloaded, searching the previous one", e);
+            }
+            synchronized (pending) {
+                pending.forEach(this::apply);
+                pending.clear();
+                reloading = false;
+            }
+            index.commit();
+        });
+    }
+
+    /**
+     * Return books that match the request ordered by relevance.
+     *
+     * @param request      must not be {@literal null}.
+     * @param page         zero-based page index.
+     * @param itemsPerPage the size of the page to be returned.
+     * @return books on the required page.
+     */
+    public List<BookSnapshot> search(String request, int page, int itemsPerPage) {
+        if (stale) {
+            stale = false;
+            index.refresh();
+        }
+        return index.search(request, page, itemsPerPage);
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.OWNER_CHANGED)
+            return;
+        synchronized (pending) {
+            if (reloading) {
+                pending.add(event);
+                return;
+            }
+        }
+        apply(event);
+        stale = true;
+    }
+
+    private void apply(BookChangedEvent event) {
+        if (event.getAfter() == null)
+            index.remove(event.getBookId());
+        else
+            index.put(event.getAfter());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        index.commit();
+        index.close();
+    }
+}
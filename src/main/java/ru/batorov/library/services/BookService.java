@@ -1,30 +1,93 @@
 package ru.batorov.library.services;
 
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
 
 import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import ru.batorov.library.catalog.CatalogSnapshot;
+import ru.batorov.library.dto.book.BookChangesDTO;
+import ru.batorov.library.dto.book.BookLoanResultDTO;
+import ru.batorov.library.dto.book.BookLoanResultDTO.Outcome;
+import ru.batorov.library.dto.book.BookUserDTO;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
 import ru.batorov.library.models.Book;
+import ru.batorov.library.models.BookTombstone;
 import ru.batorov.library.models.Person;
 import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.repositories.BookSpecifications;
+import ru.batorov.library.repositories.BookTombstoneRepository;
+import ru.batorov.library.util.BookCursor;
+import ru.batorov.library.util.BookFilter;
+import ru.batorov.library.util.ChangeCursor;
 import ru.batorov.library.util.CopyHelper;
+import ru.batorov.library.util.DTOConvert;
+import ru.batorov.library.util.ResourceVersion;
+import ru.batorov.library.util.SingleFlight;
 import ru.batorov.library.util.exceptions.BookNotFoundException;
 import ru.batorov.library.util.exceptions.PersonNotFoundException;
 
 @Service
 @Transactional(readOnly = true)
 public class BookService {
+    // books pulled from the catalog snapshot at once while streaming
+    private static final int CHUNK_SIZE = 500;
+    // books checked out or returned by one request
+    private static final int MAX_BULK_SIZE = 100;
+
     private final BookRepository bookRepository;
+    private final BookTombstoneRepository bookTombstoneRepository;
+    private final BookCountService bookCountService;
+    private final BookTitleIndexService bookTitleIndexService;
+    private final BookRankedSearchService bookRankedSearchService;
+    private final BookCacheService bookCacheService;
+    private final CatalogService catalogService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final Duration changesLag;
+    // concurrent identical reads of the database share one query
+    private final SingleFlight flights = new SingleFlight();
 
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository, BookTombstoneRepository bookTombstoneRepository,
+            BookCountService bookCountService, BookTitleIndexService bookTitleIndexService,
+            BookRankedSearchService bookRankedSearchService, BookCacheService bookCacheService,
+            CatalogService catalogService, ApplicationEventPublisher eventPublisher, EntityManager entityManager,
+            @Value("${library.changes.lag:5s}") Duration changesLag) {
         this.bookRepository = bookRepository;
+        this.bookTombstoneRepository = bookTombstoneRepository;
+        this.bookCountService = bookCountService;
+        this.bookTitleIndexService = bookTitleIndexService;
+        this.bookRankedSearchService = bookRankedSearchService;
+        this.bookCacheService = bookCacheService;
+        this.catalogService = catalogService;
+        this.eventPublisher = eventPublisher;
+        this.entityManager = entityManager;
+        this.changesLag = changesLag;
     }
 
     /**
@@ -37,17 +100,99 @@ public class BookService {
     }
 
     /**
-     * Return list of all books sorted by the given options.
+     * Return list of all books sorted by the given options. Books are read from
+     * the catalog snapshot, falls back to the database while it is warming.
      * 
      * @param sortByYear if true then sort in ascending order.
      * @return list of all books sorted by the given options.
      */
     public List<Book> all(boolean sortByYear) {
-        return sortByYear ? bookRepository.findAll(Sort.by("releaseYear")) : bookRepository.findAll();
+        return all(sortByYear, BookFilter.NONE);
+    }
+
+    /**
+     * Return list of all books matching the filter sorted by the given
+     * options. Books are read from the catalog snapshot, falls back to the
+     * database while it is warming.
+     * 
+     * @param sortByYear if true then sort in ascending order.
+     * @param filter     must not be {@literal null}.
+     * @return list of all books matching the filter.
+     */
+    public List<Book> all(boolean sortByYear, BookFilter filter) {
+        if (catalogService.isReady())
+            return catalogService.snapshot().range(sortByYear, filter, 0, Integer.MAX_VALUE, BookService::toBook);
+        return loadBooks(List.of("all", sortByYear, filter.isAvailable(), filter.getFromYear(), filter.getToYear()),
+                () -> {
+                    if (filter.isEmpty())
+                        return sortByYear ? bookRepository.findAll(Sort.by("releaseYear")) : bookRepository.findAll();
+                    return bookRepository.findFiltered(filter.isAvailable(), filter.getFromYear(),
+                            filter.getToYear(), sort(sortByYear));
+                });
+    }
+
+    /**
+     * Performs the action for every book sorted by the given options. Books are
+     * read with a database cursor and detached after the action, so memory
+     * usage doesn't depend on the number of books.
+     * 
+     * @param sortByYear if true then sort by year and id in ascending order,
+     *                   otherwise sort by id.
+     * @param action     must not be {@literal null}.
+     */
+    public void forEachBook(boolean sortByYear, Consumer<Book> action) {
+        try (Stream<Book> books = sortByYear ? bookRepository.streamAllOrderByReleaseYear()
+                : bookRepository.streamAll()) {
+            books.forEach(book -> {
+                action.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    /**
+     * Performs the action with an iterator of all books matching the filter
+     * sorted by the given options. Books are pulled lazily, in chunks from the
+     * catalog snapshot or with a database cursor while it is warming, so
+     * memory usage doesn't depend on the number of books. The iterator is valid
+     * only inside the action.
+     * 
+     * @param sortByYear if true then sort by year and id in ascending order,
+     *                   otherwise sort by id.
+     * @param filter     must not be {@literal null}.
+     * @param action     must not be {@literal null}.
+     */
+    public void withBookDTOs(boolean sortByYear, BookFilter filter, Consumer<Iterator<BookUserDTO>> action) {
+        if (catalogService.isReady()) {
+            action.accept(iterate(catalogService.snapshot(), sortByYear, filter));
+            return;
+        }
+        try (Stream<BookUserDTO> books = sortByYear
+                ? bookRepository.streamUserDTOsFilteredOrderByReleaseYear(filter.isAvailable(), filter.getFromYear(),
+                        filter.getToYear())
+                : bookRepository.streamUserDTOsFiltered(filter.isAvailable(), filter.getFromYear(),
+                        filter.getToYear())) {
+            action.accept(books.iterator());
+        }
+    }
+
+    // the next chunk is selected by the key of the last book, so it costs the same as the first one
+    private static Iterator<BookUserDTO> iterate(CatalogSnapshot snapshot, boolean sortByYear, BookFilter filter) {
+        return Stream.iterate(snapshot.range(sortByYear, filter, 0, CHUNK_SIZE, BookService::toBookUserDTO),
+                chunk -> !chunk.isEmpty(), chunk -> {
+                    if (chunk.size() < CHUNK_SIZE)
+                        return List.<BookUserDTO>of();
+                    BookUserDTO last = chunk.get(chunk.size() - 1);
+                    return snapshot.after(sortByYear, filter, last.getReleaseYear(), last.getId(), CHUNK_SIZE,
+                            BookService::toBookUserDTO);
+                }).flatMap(List::stream).iterator();
     }
 
     /**
      * Returns a list of books on the given page sorted by the given options.
+     * Doesn't count the total number of books, use {@link #count()} for that.
+     * Books are read from the catalog snapshot, falls back to the database
+     * while it is warming.
      * 
      * @param sortByYear   if true then sort in ascending order.
      * @param page         zero-based page index.
@@ -55,9 +200,201 @@ public class BookService {
      * @return list of books.
      */
     public List<Book> all(boolean sortByYear, Integer page, Integer itemsPerPage) {
-        return sortByYear
-                ? bookRepository.findAll(PageRequest.of(page, itemsPerPage, Sort.by("releaseYear"))).getContent()
-                : bookRepository.findAll(PageRequest.of(page, itemsPerPage)).getContent();
+        return all(sortByYear, BookFilter.NONE, page, itemsPerPage);
+    }
+
+    /**
+     * Returns a list of books matching the filter on the given page sorted by
+     * the given options. Doesn't count the books, use
+     * {@link #count(BookFilter)} for that.
+     * 
+     * @param sortByYear   if true then sort in ascending order.
+     * @param filter       must not be {@literal null}.
+     * @param page         zero-based page index.
+     * @param itemsPerPage the size of the page to be returned.
+     * @return list of books.
+     */
+    public List<Book> all(boolean sortByYear, BookFilter filter, Integer page, Integer itemsPerPage) {
+        if (catalogService.isReady())
+            return catalogService.snapshot().range(sortByYear, filter, (long) page * itemsPerPage, itemsPerPage,
+                    BookService::toBook);
+        return loadBooks(List.of("page", sortByYear, filter.isAvailable(), filter.getFromYear(),
+                filter.getToYear(), page, itemsPerPage), () -> {
+                    if (filter.isEmpty())
+                        return sortByYear
+                                ? bookRepository.findAllBy(PageRequest.of(page, itemsPerPage, Sort.by("releaseYear")))
+                                        .getContent()
+                                : bookRepository.findAllBy(PageRequest.of(page, itemsPerPage)).getContent();
+                    return bookRepository.findFiltered(filter.isAvailable(), filter.getFromYear(),
+                            filter.getToYear(), PageRequest.of(page, itemsPerPage, sort(sortByYear)));
+                });
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        flights.forget();
+    }
+
+    // entities belong to the session of the loading caller, so only their immutable copies are shared
+    // and every caller gets its own detached books, without owner like the books of the catalog snapshot
+    private List<Book> loadBooks(Object key, Supplier<List<Book>> loader) {
+        return flights.load(key, () -> loader.get().stream().map(BookSnapshot::of).toList()).stream()
+                .map(BookSnapshot::toBook).toList();
+    }
+
+    private static Sort sort(boolean sortByYear) {
+        return sortByYear ? Sort.by("releaseYear", "id") : Sort.by("id");
+    }
+
+    // detached book without owner, read straight from the catalog columns
+    private static Book toBook(int id, String title, String author, int releaseYear, Integer ownerId) {
+        Book book = new Book(title, author, releaseYear);
+        book.setId(id);
+        return book;
+    }
+
+    private static BookUserDTO toBookUserDTO(int id, String title, String author, int releaseYear,
+            Integer ownerId) {
+        return new BookUserDTO(id, title, author, releaseYear);
+    }
+
+    /**
+     * Return total number of books without querying the database.
+     * 
+     * @return total number of books.
+     */
+    public long count() {
+        return bookCountService.get();
+    }
+
+    /**
+     * Return number of books matching the filter. Books are counted in the
+     * catalog snapshot, falls back to the database while it is warming.
+     * 
+     * @param filter must not be {@literal null}.
+     * @return number of books matching the filter.
+     */
+    public long count(BookFilter filter) {
+        if (filter.isEmpty())
+            return count();
+        if (catalogService.isReady())
+            return catalogService.snapshot().count(filter);
+        return flights.load(List.of("count", filter.isAvailable(), filter.getFromYear(), filter.getToYear()),
+                () -> bookRepository.countFiltered(filter.isAvailable(), filter.getFromYear(), filter.getToYear()));
+    }
+
+    /**
+     * Returns a list of books that follow the given cursor sorted by the given
+     * options. Unlike offset pagination the cost doesn't depend on how deep
+     * the page is. Books are read from the catalog snapshot, falls back to the
+     * database while it is warming.
+     *
+     * @param sortByYear   if true then sort by year and id in ascending order,
+     *                     otherwise sort by id.
+     * @param after        cursor of the last book on the previous page, must not
+     *                     be {@literal null}.
+     * @param itemsPerPage the size of the page to be returned.
+     * @return list of books.
+     */
+    public List<Book> allAfter(boolean sortByYear, BookCursor after, Integer itemsPerPage) {
+        return allAfter(sortByYear, BookFilter.NONE, after, itemsPerPage);
+    }
+
+    /**
+     * Returns a list of books matching the filter that follow the given cursor
+     * sorted by the given options.
+     *
+     * @param sortByYear   if true then sort by year and id in ascending order,
+     *                     otherwise sort by id.
+     * @param filter       must not be {@literal null}.
+     * @param after        cursor of the last book on the previous page, must not
+     *                     be {@literal null}.
+     * @param itemsPerPage the size of the page to be returned.
+     * @return list of books.
+     */
+    public List<Book> allAfter(boolean sortByYear, BookFilter filter, BookCursor after, Integer itemsPerPage) {
+        if (catalogService.isReady())
+            return catalogService.snapshot().after(sortByYear, filter, after.getReleaseYear(), after.getId(),
+                    itemsPerPage, BookService::toBook);
+        PageRequest limit = PageRequest.ofSize(itemsPerPage);
+        return loadBooks(List.of("after", sortByYear, filter.isAvailable(), filter.getFromYear(),
+                filter.getToYear(), after.getReleaseYear(), after.getId(), itemsPerPage), () -> {
+                    if (filter.isEmpty())
+                        return sortByYear
+                                ? bookRepository.findAfterReleaseYearAndId(after.getReleaseYear(), after.getId(),
+                                        limit)
+                                : bookRepository.findAfterId(after.getId(), limit);
+                    return sortByYear
+                            ? bookRepository.findFilteredAfterReleaseYearAndId(filter.isAvailable(),
+                                    filter.getFromYear(), filter.getToYear(), after.getReleaseYear(), after.getId(),
+                                    limit)
+                            : bookRepository.findFilteredAfterId(filter.isAvailable(), filter.getFromYear(),
+                                    filter.getToYear(), after.getId(), limit);
+                });
+    }
+
+    /**
+     * Returns a list of books matching the specification that follow the given
+     * cursor sorted by the given options. Only the predicates of the
+     * specification are sent to the database, together with the cursor they
+     * form an index range.
+     *
+     * @param specification conditions for books, must not be {@literal null}.
+     * @param sortByYear    if true then sort by year and id in ascending order,
+     *                      otherwise sort by id.
+     * @param after         cursor of the last book on the previous page, must
+     *                      not be {@literal null}.
+     * @param itemsPerPage  the size of the page to be returned.
+     * @return list of books.
+     */
+    public List<Book> filter(Specification<Book> specification, boolean sortByYear, BookCursor after,
+            int itemsPerPage) {
+        if (after != BookCursor.FIRST)
+            specification = specification.and(sortByYear
+                    ? BookSpecifications.afterReleaseYearAndId(after.getReleaseYear(), after.getId())
+                    : BookSpecifications.afterId(after.getId()));
+        return bookRepository.findAll(specification, sort(sortByYear), itemsPerPage);
+    }
+
+    /**
+     * Returns books created, updated or deleted after the given cursor,
+     * ordered by the time of the change and id. Changes of the last seconds
+     * are returned by the next calls, so that changes of transactions that
+     * haven't committed yet aren't skipped.
+     * 
+     * @param since        cursor returned by the previous call, must not be
+     *                     {@literal null}.
+     * @param itemsPerPage maximum number of changes to be returned.
+     * @return changed books, ids of deleted books and the next cursor.
+     */
+    public BookChangesDTO changes(ChangeCursor since, int itemsPerPage) {
+        LocalDateTime until = bookRepository.now().minus(changesLag);
+        PageRequest limit = PageRequest.ofSize(itemsPerPage);
+        List<Book> changed = bookRepository.findChangedAfter(since.getTime(), since.getId(), until, limit);
+        List<BookTombstone> deleted = bookTombstoneRepository.findDeletedAfter(since.getTime(), since.getId(), until,
+                limit);
+        List<BookUserDTO> changedBooks = new ArrayList<>();
+        List<Integer> deletedIds = new ArrayList<>();
+        ChangeCursor next = since;
+        int i = 0;
+        int j = 0;
+        // merges both streams, a book can't be changed and deleted at the same position
+        while (i + j < itemsPerPage && (i < changed.size() || j < deleted.size())) {
+            ChangeCursor change = i < changed.size()
+                    ? new ChangeCursor(changed.get(i).getUpdated_at(), changed.get(i).getId())
+                    : null;
+            ChangeCursor deletion = j < deleted.size()
+                    ? new ChangeCursor(deleted.get(j).getDeletedAt(), deleted.get(j).getBookId())
+                    : null;
+            if (deletion == null || change != null && change.compareTo(deletion) < 0) {
+                changedBooks.add(DTOConvert.convertToBookUserDTO(changed.get(i++)));
+                next = change;
+            } else {
+                deletedIds.add(deleted.get(j++).getBookId());
+                next = deletion;
+            }
+        }
+        return new BookChangesDTO(changedBooks, deletedIds, next.encode(), i + j == itemsPerPage);
     }
 
     /**
@@ -82,11 +419,15 @@ public class BookService {
         book.setCreated_at(LocalDateTime.now());
         book.setUpdated_at(book.getCreated_at());
         bookRepository.save(book);
+        eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.CREATED, null, BookSnapshot.of(book)));
         return book;
     }
 
     /**
-     * Return book by its bookId if present, otherwise return null.
+     * Return book by its bookId if present, otherwise return null. Contains its
+     * owner if it exists.
+     * <p>
+     * The book is a detached copy from the cache, changes of it are not saved.
      * 
      * @param bookId must not be {@literal null}.
      * @return book if present, otherwise {@literal null}.
@@ -94,7 +435,7 @@ public class BookService {
      *                                  {@literal null}.
      */
     public Book findBookById(Integer bookId) {
-        return bookRepository.findById(bookId).orElse(null);
+        return bookCacheService.get(bookId, this::loadBookWithOwner);
     }
 
     /**
@@ -108,7 +449,10 @@ public class BookService {
      *                                  {@literal null}.
      */
     public Book getBookById(Integer bookId) {
-        return bookRepository.findById(bookId).orElseThrow(() -> new BookNotFoundException(bookId));
+        Book book = findBookById(bookId);
+        if (book == null)
+            throw new BookNotFoundException(bookId);
+        return book;
     }
 
     /**
@@ -122,8 +466,42 @@ public class BookService {
      *                                  {@literal null}.
      */
     public Book getBookByIdWithOwner(Integer bookId) {
-        Book book = bookRepository.findById(bookId).orElseThrow(() -> new BookNotFoundException(bookId));
-        Hibernate.initialize(book.getOwner());
+        return getBookById(bookId);
+    }
+
+    /**
+     * Return version of the book with its owner, {@literal null} if the book is
+     * not found. It is built from the cached copy, which is dropped on changes
+     * of the book and of people, so a book that is in the cache costs no query.
+     * Books have no version column, so the shown fields are a part of the
+     * version and two changes within the precision of updated_at differ.
+     * 
+     * @param bookId must not be {@literal null}.
+     * @param viewer tells apart representations of the book for different
+     *               users, {@literal null} for anonymous.
+     * @return version of the book or {@literal null}.
+     */
+    public ResourceVersion findVersion(Integer bookId, String viewer) {
+        Book book = findBookById(bookId);
+        if (book == null)
+            return null;
+        Person owner = book.getOwner();
+        if (owner == null)
+            return ResourceVersion.of(book.getUpdated_at(), book.getUpdated_at(), book.getTitle(), book.getAuthor(),
+                    book.getReleaseYear(), null, null, null, viewer);
+        return ResourceVersion.of(latest(book.getUpdated_at(), owner.getUpdated_at()), book.getUpdated_at(),
+                book.getTitle(), book.getAuthor(), book.getReleaseYear(), owner.getId(), owner.getVersion(),
+                owner.getUpdated_at(), viewer);
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        return second == null || first.isAfter(second) ? first : second;
+    }
+
+    private Book loadBookWithOwner(Integer bookId) {
+        Book book = bookRepository.findById(bookId).orElse(null);
+        if (book != null)
+            Hibernate.initialize(book.getOwner());
         return book;
     }
 
@@ -147,9 +525,12 @@ public class BookService {
      */
     @Transactional
     public void update(Integer bookId, Book updatedBook) {
-        Book bookToBeUpdated = getBookById(bookId);
+        Book bookToBeUpdated = bookRepository.findById(bookId).orElseThrow(() -> new BookNotFoundException(bookId));
+        BookSnapshot before = BookSnapshot.of(bookToBeUpdated);
         CopyHelper.copyNotNullProperties(updatedBook, bookToBeUpdated);
         bookRepository.save(bookToBeUpdated);
+        eventPublisher.publishEvent(
+                new BookChangedEvent(BookChangedEvent.Type.UPDATED, before, BookSnapshot.of(bookToBeUpdated)));
     }
 
     /**
@@ -163,23 +544,144 @@ public class BookService {
      */
     @Transactional
     public void delete(Integer book_id) {
-        bookRepository.deleteById(book_id);
+        bookRepository.findById(book_id).ifPresent(book -> {
+            bookRepository.delete(book);
+            bookTombstoneRepository.insert(book_id);
+            eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.DELETED, BookSnapshot.of(book), null));
+        });
     }
 
     /**
-     * Add owner to the book with required book_id.
+     * Give the book to the person if nobody has it. The check and the change
+     * are one conditional update, so of concurrent checkouts of the same book
+     * only one succeeds.
      * 
-     * @param book_id must not be {@literal null}
-     * @param person  must not be {@literal null}
-     * @throws IllegalArgumentException - if {@literal book_id}, {@literal person} or {@literal person.id}
-     *                                  is {@literal null}.
+     * @param bookId   must not be {@literal null}.
+     * @param personId must not be {@literal null}.
+     * @return true if the book was given to the person, false if somebody
+     *         already has it.
+     * @throws BookNotFoundException   if there is no book with the given id.
+     * @throws PersonNotFoundException if there is no person with the given id.
      */
     @Transactional
-    public void addOwner(Integer book_id, Person person) {
-        bookRepository.findById(book_id).ifPresent(book -> {
-            book.setOwner(person);
-            book.setTakeTime(new Date());
-        });
+    public boolean checkout(Integer bookId, Integer personId) {
+        int updated;
+        LocalDateTime takeTime = LocalDateTime.now();
+        try {
+            updated = bookRepository.checkout(bookId, personId, Timestamp.valueOf(takeTime));
+        } catch (DataIntegrityViolationException e) {
+            throw new PersonNotFoundException(personId);
+        }
+        if (updated == 0) {
+            if (!bookRepository.existsById(bookId))
+                throw new BookNotFoundException(bookId);
+            return false;
+        }
+        // the updated row is locked until commit, so it can't differ from the checked out book
+        Book book = bookRepository.findById(bookId).orElseThrow(() -> new BookNotFoundException(bookId));
+        BookSnapshot after = BookSnapshot.of(book);
+        BookSnapshot before = new BookSnapshot(after.getId(), after.getTitle(), after.getAuthor(),
+                after.getReleaseYear(), null);
+        eventPublisher
+                .publishEvent(new BookChangedEvent(BookChangedEvent.Type.OWNER_CHANGED, before, after, takeTime));
+        return true;
+    }
+
+    /**
+     * Give the free books to the person. Books are locked with one query and
+     * taken with one update, so a cart costs the same number of statements
+     * as a single book.
+     * 
+     * @param bookIds  must not be {@literal null}, repeated ids are ignored.
+     * @param personId must not be {@literal null}.
+     * @return outcome for every id in the order of the ids: DONE, NOT_FOUND or
+     *         TAKEN.
+     * @throws IllegalArgumentException if there are more than 100 ids.
+     * @throws PersonNotFoundException  if there is no person with the given id.
+     */
+    @Transactional
+    public List<BookLoanResultDTO> checkoutAll(Collection<Integer> bookIds, Integer personId) {
+        Set<Integer> ids = new LinkedHashSet<>(bookIds);
+        Map<Integer, Book> books = lockAll(ids);
+        List<Integer> free = books.values().stream().filter(book -> book.getOwner() == null).map(Book::getId)
+                .toList();
+        LocalDateTime takeTime = LocalDateTime.now();
+        if (!free.isEmpty()) {
+            try {
+                bookRepository.checkoutAll(free, personId, Timestamp.valueOf(takeTime));
+            } catch (DataIntegrityViolationException e) {
+                throw new PersonNotFoundException(personId);
+            }
+        }
+        List<BookLoanResultDTO> results = new ArrayList<>();
+        for (Integer bookId : ids) {
+            Book book = books.get(bookId);
+            if (book == null)
+                results.add(new BookLoanResultDTO(bookId, Outcome.NOT_FOUND));
+            else if (book.getOwner() != null)
+                results.add(new BookLoanResultDTO(bookId, Outcome.TAKEN));
+            else {
+                publishOwnerChanged(book, personId, takeTime);
+                results.add(new BookLoanResultDTO(bookId, Outcome.DONE));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Return the books taken by the owner with one update.
+     * 
+     * @param bookIds must not be {@literal null}, repeated ids are ignored.
+     * @param ownerId only books of this person are returned, {@literal null}
+     *                to return books of anyone.
+     * @return outcome for every id in the order of the ids: DONE, NOT_FOUND or
+     *         NOT_OWNER.
+     * @throws IllegalArgumentException if there are more than 100 ids.
+     */
+    @Transactional
+    public List<BookLoanResultDTO> releaseAll(Collection<Integer> bookIds, Integer ownerId) {
+        Set<Integer> ids = new LinkedHashSet<>(bookIds);
+        Map<Integer, Book> books = lockAll(ids);
+        List<Integer> owned = books.values().stream().filter(book -> isOwnedBy(book, ownerId)).map(Book::getId)
+                .toList();
+        LocalDateTime returnTime = LocalDateTime.now();
+        if (!owned.isEmpty())
+            bookRepository.releaseAll(owned);
+        List<BookLoanResultDTO> results = new ArrayList<>();
+        for (Integer bookId : ids) {
+            Book book = books.get(bookId);
+            if (book == null)
+                results.add(new BookLoanResultDTO(bookId, Outcome.NOT_FOUND));
+            else if (!isOwnedBy(book, ownerId))
+                results.add(new BookLoanResultDTO(bookId, Outcome.NOT_OWNER));
+            else {
+                publishOwnerChanged(book, null, returnTime);
+                results.add(new BookLoanResultDTO(bookId, Outcome.DONE));
+            }
+        }
+        return results;
+    }
+
+    // locked books can't change until commit, so the outcomes follow from them
+    private Map<Integer, Book> lockAll(Set<Integer> bookIds) {
+        if (bookIds.size() > MAX_BULK_SIZE)
+            throw new IllegalArgumentException("at most " + MAX_BULK_SIZE + " books can be processed at once");
+        Map<Integer, Book> books = new HashMap<>();
+        if (!bookIds.isEmpty())
+            bookRepository.findAllByIdForUpdate(bookIds).forEach(book -> books.put(book.getId(), book));
+        return books;
+    }
+
+    private static boolean isOwnedBy(Book book, Integer ownerId) {
+        return book.getOwner() != null && (ownerId == null || ownerId.equals(book.getOwner().getId()));
+    }
+
+    private void publishOwnerChanged(Book book, Integer ownerId, LocalDateTime changedAt) {
+        BookSnapshot before = BookSnapshot.of(book);
+        BookSnapshot after = new BookSnapshot(before.getId(), before.getTitle(), before.getAuthor(),
+                before.getReleaseYear(), ownerId);
+        eventPublisher
+                .publishEvent(new BookChangedEvent(BookChangedEvent.Type.OWNER_CHANGED, before, after, changedAt));
     }
 
     /**
@@ -191,19 +693,63 @@ public class BookService {
      */
     @Transactional
     public void deleteOwner(Integer bookId) {
-        bookRepository.findById(bookId).ifPresent(book -> book.setOwner(null));
+        bookRepository.findById(bookId).ifPresent(book -> {
+            BookSnapshot before = BookSnapshot.of(book);
+            book.setOwner(null);
+            eventPublisher.publishEvent(
+                    new BookChangedEvent(BookChangedEvent.Type.OWNER_CHANGED, before, BookSnapshot.of(book)));
+        });
     }
 
     /**
-     * Return books which title contains reqired string
+     * Return books which title contains reqired string. Uses in-memory title
+     * index, falls back to the database while the index is warming.
      * 
      * @param findRequest 
      * @return books with findRequest in title
      */
     public List<Book> findBooksByTitleContaining(String findRequest) {
+        if (bookTitleIndexService.isReady())
+            return bookTitleIndexService.findByTitleContaining(findRequest).stream().map(BookSnapshot::toBook)
+                    .toList();
         return bookRepository.findByTitleContaining(findRequest);
     }
 
+    /**
+     * Return books which title contains reqired string, without loading
+     * entities. Uses in-memory title index, falls back to the database
+     * projection while the index is warming.
+     * 
+     * @param findRequest must not be {@literal null}.
+     * @return books with findRequest in title
+     */
+    public List<BookUserDTO> findBookDTOsByTitleContaining(String findRequest) {
+        if (bookTitleIndexService.isReady())
+            return bookTitleIndexService.findByTitleContaining(findRequest).stream()
+                    .map(book -> new BookUserDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getReleaseYear()))
+                    .toList();
+        List<BookUserDTO> books = flights.load(List.of("title", findRequest),
+                () -> List.copyOf(bookRepository.findUserDTOsByTitleContaining(findRequest)));
+        // DTOs are mutable, so every caller gets its own
+        return books.stream()
+                .map(book -> new BookUserDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getReleaseYear()))
+                .toList();
+    }
+
+    /**
+     * Return books which title or author match the request ordered by
+     * relevance. Doesn't query the database.
+     * 
+     * @param request      must not be {@literal null}.
+     * @param page         zero-based page index.
+     * @param itemsPerPage the size of the page to be returned.
+     * @return books on the required page.
+     */
+    public List<Book> findBooksRanked(String request, Integer page, Integer itemsPerPage) {
+        return bookRankedSearchService.search(request, page, itemsPerPage).stream().map(BookSnapshot::toBook)
+                .toList();
+    }
+
     /**
      * Returns book owner if exists, otherwise null.
      * 
@@ -214,9 +760,7 @@ public class BookService {
      *                                  {@literal null}.
      */
     public Person findBooksOwner(Integer bookId) {
-        Book book = getBookById(bookId);
-        Hibernate.initialize(book.getOwner());
-        return book.getOwner();
+        return getBookById(bookId).getOwner();
     }
 
     /**
@@ -231,7 +775,6 @@ public class BookService {
      */
     public Person getBooksOwner(Integer bookId) {
         Book book = getBookById(bookId);
-        Hibernate.initialize(book.getOwner());
         if (book.getOwner() == null) throw new PersonNotFoundException("Book dont have the owner");
         return book.getOwner();
     }
@@ -0,0 +1,121 @@
+package ru.batorov.library.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.search.SuggestionTrie;
+
+/**
+ * Autocompletes titles and authors. Phrases shared by several books are
+ * suggested first. Tries are built in background after startup and then
+ * updated from BookChangedEvent.
+ */
+@Service
+public class BookSuggestService {
+    private static final Logger log = LoggerFactory.getLogger(BookSuggestService.class);
+    private static final int TOP_SIZE = 10;
+
+    private final BookRepository bookRepository;
+    private final SuggestionTrie titles = new SuggestionTrie(TOP_SIZE);
+    private final SuggestionTrie authors = new SuggestionTrie(TOP_SIZE);
+    // indexed version of every book, makes repeated changes idempotent
+    private final Map<Integer, BookSnapshot> indexed = new ConcurrentHashMap<>();
+    // changes that happened while the tries were warming
+    private final List<BookChangedEvent> pending = new ArrayList<>();
+    private volatile boolean ready;
+
+    public BookSuggestService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(this::build);
+    }
+
+    private void build() {
+        try {
+            bookRepository.findAll().forEach(book -> put(BookSnapshot.of(book)));
+            synchronized (pending) {
+                pending.forEach(this::apply);
+                pending.clear();
+                ready = true;
+            }
+            log.info("Book suggestions are ready");
+        } catch (RuntimeException e) {
+            log.error("Book suggestions weren't built", e);
+        }
+    }
+
+    /**
+     * Return most common titles that start with the given prefix, case
+     * insensitive. Returns empty list while warming.
+     *
+     * @param prefix must not be {@literal null}.
+     * @return at most 10 titles.
+     */
+    public List<String> suggestTitles(String prefix) {
+        return ready ? titles.complete(prefix) : List.of();
+    }
+
+    /**
+     * Return most prolific authors whose name starts with the given prefix,
+     * case insensitive. Returns empty list while warming.
+     *
+     * @param prefix must not be {@literal null}.
+     * @return at most 10 authors.
+     */
+    public List<String> suggestAuthors(String prefix) {
+        return ready ? authors.complete(prefix) : List.of();
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.OWNER_CHANGED)
+            return;
+        if (!ready) {
+            synchronized (pending) {
+                if (!ready) {
+                    pending.add(event);
+                    return;
+                }
+            }
+        }
+        apply(event);
+    }
+
+    private void apply(BookChangedEvent event) {
+        if (event.getAfter() == null)
+            remove(event.getBookId());
+        else
+            put(event.getAfter());
+    }
+
+    private synchronized void put(BookSnapshot book) {
+        remove(book.getId());
+        indexed.put(book.getId(), book);
+        titles.add(book.getTitle(), 1);
+        authors.add(book.getAuthor(), 1);
+    }
+
+    private synchronized void remove(Integer bookId) {
+        BookSnapshot old = indexed.remove(bookId);
+        if (old != null) {
+            titles.add(old.getTitle(), -1);
+            authors.add(old.getAuthor(), -1);
+        }
+    }
+}
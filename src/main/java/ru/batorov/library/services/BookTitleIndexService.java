@@ -0,0 +1,99 @@
+package ru.batorov.library.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.search.TrigramIndex;
+
+/**
+ * Keeps the trigram index of book titles. The index is built in background
+ * after startup and then updated from BookChangedEvent.
+ */
+@Service
+public class BookTitleIndexService {
+    private static final Logger log = LoggerFactory.getLogger(BookTitleIndexService.class);
+
+    private final BookRepository bookRepository;
+    private final TrigramIndex index = new TrigramIndex();
+    // changes that happened while the index was warming
+    private final List<BookChangedEvent> pending = new ArrayList<>();
+    private volatile boolean ready;
+
+    public BookTitleIndexService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(this::build);
+    }
+
+    private void build() {
+        try {
+            bookRepository.findAll().forEach(book -> index.put(BookSnapshot.of(book)));
+            synchronized (pending) {
+                pending.forEach(this::apply);
+                pending.clear();
+                ready = true;
+            }
+            log.info("Book title index is ready, {} books indexed", index.size());
+        } catch (RuntimeException e) {
+            log.error("Book title index wasn't built, search will use the database", e);
+        }
+    }
+
+    /**
+     * Return true if the index contains all books and can be queried.
+     *
+     * @return true if the index can be queried.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Return books which title contains reqired string ordered by id.
+     *
+     * @param findRequest must not be {@literal null}.
+     * @return books with findRequest in title.
+     * @throws IllegalStateException if the index is not ready.
+     */
+    public List<BookSnapshot> findByTitleContaining(String findRequest) {
+        if (!ready)
+            throw new IllegalStateException("Book title index is warming");
+        return index.search(findRequest);
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (!ready) {
+            synchronized (pending) {
+                if (!ready) {
+                    pending.add(event);
+                    return;
+                }
+            }
+        }
+        apply(event);
+    }
+
+    private void apply(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.OWNER_CHANGED)
+            return;
+        if (event.getAfter() == null)
+            index.remove(event.getBookId());
+        else
+            index.put(event.getAfter());
+    }
+}
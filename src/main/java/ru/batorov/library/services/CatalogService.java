@@ -0,0 +1,217 @@
+package ru.batorov.library.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.catalog.CatalogFile;
+import ru.batorov.library.catalog.CatalogSnapshot;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.models.Book;
+import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.repositories.BookTombstoneRepository;
+import ru.batorov.library.util.ResourceVersion;
+
+/**
+ * Keeps the columnar snapshot of the catalog used to list books. The
+ * snapshot is restored in background after startup and then kept up to date
+ * with every BookChangedEvent. Changes are applied when the snapshot is read, so a
+ * burst of them, e.g. an import, rebuilds the snapshot once instead of
+ * copying it for every book.
+ * <p>
+ * The snapshot is saved to a file on shutdown. On the next startup the file
+ * is mapped and only books updated after it was saved are read from the
+ * database, books deleted since are found by their tombstones. The whole
+ * table is loaded only if there is no usable file.
+ */
+@Service
+public class CatalogService {
+    private static final Logger log = LoggerFactory.getLogger(CatalogService.class);
+    // covers transactions that were running when the snapshot was taken and clock differences
+    private static final Duration WATERMARK_MARGIN = Duration.ofMinutes(1);
+    // more unapplied changes than this are applied by rebuilding the snapshot
+    private static final int REBUILD_THRESHOLD = 64;
+
+    private final BookRepository bookRepository;
+    private final BookTombstoneRepository bookTombstoneRepository;
+    private final CatalogFile file;
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.empty();
+    // changes that happened while the snapshot was warming
+    private final List<BookChangedEvent> pending = new ArrayList<>();
+    private volatile boolean ready;
+    // last change of every book changed since the snapshot was read, null if the book was deleted
+    private final Map<Integer, BookSnapshot> unapplied = new LinkedHashMap<>();
+    private volatile boolean stale;
+    // bumped after every change of books, the start time tells versions of different runs apart
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = startedAt;
+
+    public CatalogService(BookRepository bookRepository, BookTombstoneRepository bookTombstoneRepository,
+            @Value("${library.catalog.snapshot-file:catalog.snapshot}") String snapshotFile) {
+        this.bookRepository = bookRepository;
+        this.bookTombstoneRepository = bookTombstoneRepository;
+        this.file = new CatalogFile(Path.of(snapshotFile));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(this::build);
+    }
+
+    private void build() {
+        try {
+            CatalogSnapshot loaded = restore();
+            boolean restored = loaded != null;
+            LocalDateTime watermark = null;
+            if (!restored) {
+                watermark = watermark();
+                loaded = CatalogSnapshot.of(bookRepository.findAll().stream().map(BookSnapshot::of).toList());
+            }
+            synchronized (pending) {
+                snapshot = loaded;
+                pending.forEach(this::apply);
+                pending.clear();
+                ready = true;
+            }
+            log.info("Catalog snapshot is ready, {} books, {}", loaded.size(),
+                    restored ? "restored from " + file : "loaded from the database");
+            if (!restored)
+                save(loaded, watermark);
+        } catch (RuntimeException e) {
+            log.error("Catalog snapshot wasn't built, books will be listed from the database", e);
+        }
+    }
+
+    // returns the saved snapshot brought up to date or null if there is no usable one
+    private CatalogSnapshot restore() {
+        CatalogFile.Saved saved;
+        try {
+            saved = file.read();
+        } catch (IOException e) {
+            log.warn("Saved catalog snapshot can't be read, loading books from the database", e);
+            return null;
+        }
+        if (saved == null)
+            return null;
+        // ids are never reused, so a tombstone can't hide a book that was created again
+        Map<Integer, BookSnapshot> changes = new HashMap<>();
+        for (Integer bookId : bookTombstoneRepository.findBookIdsDeletedSince(saved.getWatermark()))
+            changes.put(bookId, null);
+        for (Book book : bookRepository.findUpdatedSince(saved.getWatermark()))
+            changes.put(book.getId(), BookSnapshot.of(book));
+        return saved.getSnapshot().withChanges(changes);
+    }
+
+    private LocalDateTime watermark() {
+        return bookRepository.now().minus(WATERMARK_MARGIN);
+    }
+
+    private void save(CatalogSnapshot saved, LocalDateTime watermark) {
+        try {
+            file.write(saved, watermark);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Catalog snapshot wasn't saved", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!ready)
+            return;
+        try {
+            // the watermark is taken first, so it can't miss changes of the saved snapshot
+            LocalDateTime watermark = watermark();
+            save(snapshot(), watermark);
+        } catch (RuntimeException e) {
+            log.warn("Catalog snapshot wasn't saved", e);
+        }
+    }
+
+    /**
+     * Return true if the snapshot contains all books and can be queried.
+     *
+     * @return true if the snapshot can be queried.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Return the current snapshot. It never changes, so several reads of it are
+     * consistent with each other.
+     *
+     * @return the current snapshot.
+     * @throws IllegalStateException if the snapshot is not ready.
+     */
+    public CatalogSnapshot snapshot() {
+        if (!ready)
+            throw new IllegalStateException("Catalog snapshot is warming");
+        return stale ? applied() : snapshot;
+    }
+
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (!ready) {
+            synchronized (pending) {
+                if (!ready) {
+                    pending.add(event);
+                    changed();
+                    return;
+                }
+            }
+        }
+        apply(event);
+        changed();
+    }
+
+    /**
+     * Return version of the catalog, it changes after every change of books.
+     * Read it before books, then a list is never older than its version.
+     * 
+     * @return version of the catalog.
+     */
+    public ResourceVersion version() {
+        long current = version.get();
+        return ResourceVersion.of(lastModified, startedAt, current);
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        lastModified = System.currentTimeMillis();
+    }
+
+    private synchronized void apply(BookChangedEvent event) {
+        unapplied.put(event.getBookId(), event.getAfter());
+        stale = true;
+    }
+
+    private synchronized CatalogSnapshot applied() {
+        if (unapplied.size() > REBUILD_THRESHOLD)
+            snapshot = snapshot.withChanges(unapplied);
+        else
+            unapplied.forEach((bookId, book) -> snapshot = book == null ? snapshot.without(bookId) : snapshot.with(book));
+        unapplied.clear();
+        stale = false;
+        return snapshot;
+    }
+}
@@ -0,0 +1,171 @@
+package ru.batorov.library.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.models.LoanEvent;
+import ru.batorov.library.repositories.LoanEventRepository;
+
+/**
+ * Keeps the history of loans. Committed changes of owners are put into a
+ * bounded queue and written by a background thread in multi-row inserts, so
+ * checkouts and returns don't wait for the history. When the queue is full the
+ * event is dropped and counted, the request isn't held. The queue is written
+ * out on shutdown, failed inserts are retried until the shutdown timeout.
+ */
+@Service
+public class LoanEventService {
+    private static final Logger log = LoggerFactory.getLogger(LoanEventService.class);
+    private static final long POLL_MILLIS = 1000;
+
+    private final LoanEventRepository loanEventRepository;
+    private final BlockingQueue<LoanEvent> queue;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final Duration shutdownTimeout;
+    private final Thread writer = new Thread(this::write, "loan-event-writer");
+    private final AtomicLong lost = new AtomicLong();
+    private volatile boolean running = true;
+    // System.nanoTime() after which failed inserts aren't retried, set on shutdown
+    private volatile long deadline;
+
+    public LoanEventService(LoanEventRepository loanEventRepository,
+            @Value("${library.loans.queue-capacity:10000}") int queueCapacity,
+            @Value("${library.loans.batch-size:200}") int batchSize,
+            @Value("${library.loans.retry-delay:5s}") Duration retryDelay,
+            @Value("${library.loans.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        this.loanEventRepository = loanEventRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.shutdownTimeout = shutdownTimeout;
+        writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Return loans of the book, the latest first. Loans of the last moments may
+     * be still in the queue.
+     *
+     * @param bookId       must not be {@literal null}.
+     * @param page         zero-based page index.
+     * @param itemsPerPage the size of the page to be returned.
+     * @return loan events on the required page.
+     */
+    public List<LoanEvent> history(Integer bookId, int page, int itemsPerPage) {
+        return loanEventRepository.findByBookIdOrderByHappenedAtDescIdDesc(bookId,
+                PageRequest.of(page, itemsPerPage));
+    }
+
+    /**
+     * Return the number of loan events that weren't written because the queue
+     * was full or the database failed on shutdown.
+     */
+    public long lost() {
+        return lost.get();
+    }
+
+    // the listener runs after commit, so the time is taken from the change, not from now
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        Integer before = ownerId(event.getBefore());
+        Integer after = ownerId(event.getAfter());
+        if (Objects.equals(before, after))
+            return;
+        if (before != null)
+            enqueue(new LoanEvent(event.getBookId(), before, LoanEvent.Kind.RETURNED, event.getChangedAt()));
+        if (after != null)
+            enqueue(new LoanEvent(event.getBookId(), after, LoanEvent.Kind.TAKEN, event.getChangedAt()));
+    }
+
+    private static Integer ownerId(BookSnapshot book) {
+        return book == null ? null : book.getOwnerId();
+    }
+
+    // a full queue means the database doesn't keep up, the request thread doesn't wait for it
+    private void enqueue(LoanEvent event) {
+        if (queue.offer(event))
+            return;
+        log.error("Loan event queue is full, {} of book {} by person {} is lost, {} lost in total", event.getKind(),
+                event.getBookId(), event.getPersonId(), lost.incrementAndGet());
+    }
+
+    private void write() {
+        List<LoanEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LoanEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            insert(batch);
+            batch.clear();
+        }
+    }
+
+    // retries until the events are written, on shutdown until the deadline
+    private void insert(List<LoanEvent> batch) {
+        while (true) {
+            long delay;
+            try {
+                loanEventRepository.insertAll(batch);
+                return;
+            } catch (RuntimeException e) {
+                delay = running ? retryDelay.toMillis()
+                        : Math.min(retryDelay.toMillis(),
+                                TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                if (delay <= 0) {
+                    log.error("{} loan events weren't written, {} lost in total", batch.size(),
+                            lost.addAndGet(batch.size()), e);
+                    return;
+                }
+                log.warn("{} loan events weren't written, retrying in {} ms", batch.size(), delay, e);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("{} loan events weren't written, {} lost in total", batch.size(),
+                        lost.addAndGet(batch.size()));
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        running = false;
+        // the writer gives up at the deadline, the extra poll lets it finish the last insert
+        writer.join(shutdownTimeout.toMillis() + POLL_MILLIS);
+        if (writer.isAlive())
+            log.error("Loan event writer didn't stop, {} events may be lost", queue.size());
+    }
+}
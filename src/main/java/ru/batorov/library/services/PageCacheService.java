@@ -0,0 +1,152 @@
+package ru.batorov.library.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.View;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import ru.batorov.library.events.BookChangedEvent;
+
+/**
+ * Cache of rendered catalog pages. Pages are keyed by the view, request
+ * parameters, role of the viewer and the catalog version, so a page is never
+ * served after books change. Only pages of anonymous visitors are cached,
+ * pages of signed in users contain CSRF tokens and their own data.
+ */
+@Service
+public class PageCacheService {
+    private static final String ANONYMOUS = "ROLE_ANONYMOUS";
+
+    private final CatalogService catalogService;
+    private final ThymeleafViewResolver viewResolver;
+    private final Cache<Object, Page> cache;
+
+    public PageCacheService(CatalogService catalogService, ThymeleafViewResolver viewResolver,
+            @Value("${library.cache.pages.max-bytes:67108864}") long maxBytes) {
+        this.catalogService = catalogService;
+        this.viewResolver = viewResolver;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Object, Page>weigher((key, page) -> page.body.length)
+                .build();
+    }
+
+    /**
+     * Return key of the page for the viewer. The catalog version is read here,
+     * so the key must be taken before books are read.
+     *
+     * @param viewName       must not be {@literal null}.
+     * @param authentication {@literal null} for anonymous visitors.
+     * @param params         request parameters the page depends on,
+     *                       {@literal null} values are allowed.
+     * @return key of the page, {@literal null} if the page can't be cached for
+     *         the viewer.
+     */
+    public Object key(String viewName, Authentication authentication, Object... params) {
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken))
+            return null;
+        List<Object> key = new ArrayList<>(params.length + 3);
+        key.add(viewName);
+        key.add(ANONYMOUS);
+        key.add(catalogService.version().getETag());
+        key.addAll(Arrays.asList(params));
+        return key;
+    }
+
+    /**
+     * Return view that writes the cached page.
+     *
+     * @param key returned by {@link #key}, {@literal null} if the page can't be
+     *            cached.
+     * @return view of the cached page, {@literal null} if the page isn't
+     *         cached.
+     */
+    public View cached(Object key) {
+        if (key == null)
+            return null;
+        Page page = cache.getIfPresent(key);
+        return page == null ? null : (model, request, response) -> page.writeTo(response);
+    }
+
+    /**
+     * Return the view that renders the page and caches it under the key.
+     *
+     * @param viewName must not be {@literal null}.
+     * @param key      returned by {@link #key}, {@literal null} if the page
+     *                 can't be cached.
+     * @param locale   must not be {@literal null}.
+     * @return view of the page.
+     * @throws IllegalStateException if the view can't be resolved.
+     */
+    public View render(String viewName, Object key, Locale locale) {
+        View view;
+        try {
+            view = viewResolver.resolveViewName(viewName, locale);
+        } catch (Exception e) {
+            throw new IllegalStateException("View " + viewName + " can't be resolved", e);
+        }
+        if (key == null)
+            return view;
+        return new View() {
+            @Override
+            public String getContentType() {
+                return view.getContentType();
+            }
+
+            @Override
+            public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response)
+                    throws Exception {
+                ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+                view.render(model, request, wrapper);
+                if (wrapper.getStatus() == HttpServletResponse.SC_OK && !hasSessionInUrls(request))
+                    cache.put(key, new Page(wrapper.getContentType(), wrapper.getContentAsByteArray()));
+                wrapper.copyBodyToResponse();
+            }
+        };
+    }
+
+    // versions in keys keep stale pages from being served, this only frees the memory
+    @TransactionalEventListener
+    public void onBookChanged(BookChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    // links are rewritten with the session id when the session isn't in a cookie
+    private static boolean hasSessionInUrls(HttpServletRequest request) {
+        return request.getSession(false) != null && !request.isRequestedSessionIdFromCookie();
+    }
+
+    private static class Page {
+        private final String contentType;
+        private final byte[] body;
+
+        private Page(String contentType, byte[] body) {
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        private void writeTo(HttpServletResponse response) throws IOException {
+            response.setContentType(contentType);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -5,9 +5,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.hibernate.Hibernate;
 import org.springframework.context.annotation.Lazy;
@@ -19,28 +25,44 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import ru.batorov.library.dto.RoleDTO;
+import ru.batorov.library.dto.person.PersonAdminDTO;
 import ru.batorov.library.models.Book;
 import ru.batorov.library.models.Person;
 import ru.batorov.library.models.Role;
 import ru.batorov.library.repositories.PeopleRepository;
+import ru.batorov.library.repositories.PeopleRepository.PeopleVersion;
+import ru.batorov.library.repositories.PeopleRepository.PersonRoleRow;
 import ru.batorov.library.security.PersonDetails;
 import ru.batorov.library.util.CopyHelper;
+import ru.batorov.library.util.FieldSet;
+import ru.batorov.library.util.ResourceVersion;
+import ru.batorov.library.util.SingleFlight;
 import ru.batorov.library.util.exceptions.PersonNotFoundException;
 import ru.batorov.library.util.exceptions.RoleNotFoundException;
 
 @Service
 @Transactional(readOnly = true)
 public class PeopleService implements UserDetailsService {
+    // books taken more than 10 days ago are expired
+    private static final long EXPIRATION_MILLIS = 864000000;
+
     private final PeopleRepository peopleRepository;
     private final PasswordEncoder passwordEncoder;
     private final RolesService rolesService;
+    private final BookCacheService bookCacheService;
+    private final CatalogService catalogService;
+    // concurrent identical reads of the database share one query
+    private final SingleFlight flights = new SingleFlight();
 
     @Lazy
     public PeopleService(PeopleRepository peopleRepository, PasswordEncoder passwordEncoder,
-            RolesService rolesService) {
+            RolesService rolesService, BookCacheService bookCacheService, CatalogService catalogService) {
         this.peopleRepository = peopleRepository;
         this.passwordEncoder = passwordEncoder;
         this.rolesService = rolesService;
+        this.bookCacheService = bookCacheService;
+        this.catalogService = catalogService;
     }
 
     /**
@@ -61,6 +83,84 @@ public class PeopleService implements UserDetailsService {
         return peopleRepository.findAllWithRoles();
     }
 
+    /**
+     * Return all persons with roles as DTOs. Rows are read with a projection,
+     * so no entities are loaded and no mapping is needed.
+     * 
+     * @return list of all persons with roles ordered by id.
+     */
+    public List<PersonAdminDTO> allAdminDTOs() {
+        // only the read-only rows are shared, every caller gets its own DTOs
+        List<PersonRoleRow> rows = flights.load("allPersonRoleRows",
+                () -> List.copyOf(peopleRepository.findAllPersonRoleRows()));
+        Map<Integer, PersonAdminDTO> people = new LinkedHashMap<>();
+        for (PersonRoleRow row : rows) {
+            PersonAdminDTO person = people.computeIfAbsent(row.getId(),
+                    id -> new PersonAdminDTO(id, row.getFullName(), row.getYearOfBirth(), new ArrayList<>()));
+            if (row.getRoleName() != null)
+                person.getRoles().add(new RoleDTO(row.getRoleName()));
+        }
+        return new ArrayList<>(people.values());
+    }
+
+    /**
+     * Performs the action with an iterator of all persons with roles ordered by
+     * id. Persons are read lazily with a database cursor, so memory usage
+     * doesn't depend on the number of persons. The iterator is valid only
+     * inside the action.
+     * 
+     * @param action must not be {@literal null}.
+     */
+    public void withAdminDTOs(Consumer<Iterator<PersonAdminDTO>> action) {
+        try (Stream<PersonRoleRow> rows = peopleRepository.streamAllPersonRoleRows()) {
+            action.accept(new PersonIterator(rows.iterator()));
+        }
+    }
+
+    // joins consecutive rows of the same person, rows are ordered by id
+    private static class PersonIterator implements Iterator<PersonAdminDTO> {
+        private final Iterator<PersonRoleRow> rows;
+        private PersonRoleRow next;
+
+        private PersonIterator(Iterator<PersonRoleRow> rows) {
+            this.rows = rows;
+            this.next = rows.hasNext() ? rows.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public PersonAdminDTO next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            PersonAdminDTO person = new PersonAdminDTO(next.getId(), next.getFullName(), next.getYearOfBirth(),
+                    new ArrayList<>());
+            while (next != null && next.getId().equals(person.getId())) {
+                if (next.getRoleName() != null)
+                    person.getRoles().add(new RoleDTO(next.getRoleName()));
+                next = rows.hasNext() ? rows.next() : null;
+            }
+            return person;
+        }
+    }
+
+    /**
+     * Return all people with the given fields. Only the columns of the fields
+     * are read, roles are joined only if they are requested. Other fields of
+     * the returned people are {@literal null}.
+     * 
+     * @param fields must not be {@literal null}.
+     * @return list of all people.
+     */
+    public List<Person> allWithFields(FieldSet fields) {
+        if (fields.contains("roles"))
+            return allWithRoles();
+        return peopleRepository.findAllWithAttributes(fields.getNames());
+    }
+
     /**
      * Return person by its person_id if present, otherwise return null.
      * 
@@ -124,6 +224,39 @@ public class PeopleService implements UserDetailsService {
         return person;
     }
 
+    /**
+     * Return version of the list of all persons without loading them. It
+     * changes when a person is added, deleted or updated, every update bumps
+     * the version of the person, so it doesn't depend on updated_at precision.
+     * 
+     * @return version of the list of all persons.
+     */
+    public ResourceVersion allVersion() {
+        PeopleVersion version = flights.load("allVersion", peopleRepository::findPeopleVersion);
+        return ResourceVersion.of(-1, version.getCount(), version.getIdSum(), version.getVersionSum(),
+                version.getUpdatedAt());
+    }
+
+    /**
+     * Return version of the person with roles and books without loading them,
+     * {@literal null} if the person is not found. Changes of the person bump its
+     * version and changes of books bump the catalog version, so two changes
+     * within the precision of updated_at give different versions.
+     * 
+     * @param person_id must not be {@literal null}.
+     * @return version of the person or {@literal null}.
+     */
+    public ResourceVersion findVersion(Integer person_id) {
+        // read before the person, then the version is never newer than the person
+        String catalogVersion = catalogService.version().getETag();
+        Date expiredBefore = new Date(System.currentTimeMillis() - EXPIRATION_MILLIS);
+        return peopleRepository.findVersionById(person_id, expiredBefore)
+                .map(version -> ResourceVersion.of(-1, version.getVersion(), version.getUpdatedAt(), catalogVersion,
+                        version.getBookCount(), version.getBookIdSum(), version.getBooksUpdatedAt(),
+                        version.getExpiredCount()))
+                .orElse(null);
+    }
+
     /**
      * Return person by its person_id with roles and books if present, otherwise
      * throw PersonNotFoundException.
@@ -162,6 +295,7 @@ public class PeopleService implements UserDetailsService {
     @Transactional
     public Person save(Person person) {
         peopleRepository.save(person);
+        flights.forgetAfterCommit();
         return person;
     }
 
@@ -266,6 +400,10 @@ public class PeopleService implements UserDetailsService {
         if (person.getPassword() != null)
             person.setPassword(passwordEncoder.encode(person.getPassword()));
         CopyHelper.copyNotNullProperties(person, personToBeUpdated);
+        // validators of the person and the list of people are built from the version, updated_at may not change
+        personToBeUpdated.setVersion(personToBeUpdated.getVersion() + 1);
+        bookCacheService.invalidateAllAfterCommit();
+        flights.forgetAfterCommit();
     }
 
     /**
@@ -280,6 +418,8 @@ public class PeopleService implements UserDetailsService {
     @Transactional
     public void delete(Integer person_id) {
         peopleRepository.deleteById(person_id);
+        bookCacheService.invalidateAllAfterCommit();
+        flights.forgetAfterCommit();
     }
 
     /**
@@ -365,6 +505,7 @@ public class PeopleService implements UserDetailsService {
         Role roleToAdd = rolesService.getRoleByName(role.getName());
         person.getRoles().add(roleToAdd);
         person.setVersion(person.getVersion() + 1);
+        flights.forgetAfterCommit();
     }
 
     /**
@@ -389,8 +530,10 @@ public class PeopleService implements UserDetailsService {
         if (roleToDelete.getName().equals("ROLE_USER"))
             return;
         Person person = getPersonWithRoles(personId);
-        if (person.getRoles().remove(roleToDelete))
+        if (person.getRoles().remove(roleToDelete)) {
             person.setVersion(person.getVersion() + 1);
+            flights.forgetAfterCommit();
+        }
     }
 
     /**
@@ -430,7 +573,7 @@ public class PeopleService implements UserDetailsService {
             throw new IllegalArgumentException("Books must not be null!");
         books.forEach(book -> {
             long time = Math.abs(new Date().getTime() - book.getTakeTime().getTime());
-            book.setExpired(864000000 < time);
+            book.setExpired(EXPIRATION_MILLIS < time);
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package ru.batorov.library.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import ru.batorov.library.models.Book;
+
+/**
+ * Opaque position in the book catalog used by keyset (seek) pagination.
+ * <p>
+ * Encodes the sort key of the last returned book: {@code (releaseYear, id)}
+ * when sorting by year, otherwise only {@code id}.
+ */
+public class BookCursor {
+	public static final BookCursor FIRST = new BookCursor(Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+	private final int releaseYear;
+	private final int id;
+
+	private BookCursor(int releaseYear, int id) {
+		this.releaseYear = releaseYear;
+		this.id = id;
+	}
+
+	/**
+	 * Return cursor pointing right after the given book.
+	 *
+	 * @param book       last book of the page, must not be {@literal null}.
+	 * @param sortByYear if true then cursor contains release year.
+	 * @return cursor pointing right after the given book.
+	 */
+	public static BookCursor after(Book book, boolean sortByYear) {
+		return new BookCursor(sortByYear ? book.getReleaseYear() : Integer.MIN_VALUE, book.getId());
+	}
+
+	/**
+	 * Decode cursor from the token returned by {@link #encode(boolean)}.
+	 * Empty or {@literal null} token means the first page.
+	 *
+	 * @param token      opaque token.
+	 * @param sortByYear if true then token must contain release year.
+	 * @return decoded cursor.
+	 * @throws IllegalArgumentException if token is malformed.
+	 */
+	public static BookCursor decode(String token, boolean sortByYear) {
+		if (token == null || token.isEmpty())
+			return FIRST;
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+			if (sortByYear && parts.length == 2)
+				return new BookCursor(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+			if (!sortByYear && parts.length == 1)
+				return new BookCursor(Integer.MIN_VALUE, Integer.parseInt(parts[0]));
+		} catch (IllegalArgumentException e) {
+			// handled below
+		}
+		throw new IllegalArgumentException("Malformed cursor: " + token);
+	}
+
+	/**
+	 * Encode cursor as opaque url-safe token.
+	 *
+	 * @param sortByYear if true then token contains release year.
+	 * @return opaque token.
+	 */
+	public String encode(boolean sortByYear) {
+		String raw = sortByYear ? releaseYear + ":" + id : String.valueOf(id);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public int getReleaseYear() {
+		return releaseYear;
+	}
+
+	public int getId() {
+		return id;
+	}
+}
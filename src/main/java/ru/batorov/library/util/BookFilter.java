@@ -0,0 +1,62 @@
+package ru.batorov.library.util;
+
+/**
+ * Conditions for listing books: only available (not taken) books and the
+ * inclusive range of release years. Missing bounds are unlimited.
+ */
+public class BookFilter {
+	public static final BookFilter NONE = new BookFilter(false, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+	private final boolean available;
+	private final int fromYear;
+	private final int toYear;
+
+	private BookFilter(boolean available, int fromYear, int toYear) {
+		this.available = available;
+		this.fromYear = fromYear;
+		this.toYear = toYear;
+	}
+
+	/**
+	 * Return filter with the given conditions.
+	 *
+	 * @param available if true then only books without owner match.
+	 * @param fromYear  the least release year, {@literal null} if unlimited.
+	 * @param toYear    the greatest release year, {@literal null} if unlimited.
+	 * @return filter with the given conditions.
+	 * @throws IllegalArgumentException if fromYear is greater than toYear.
+	 */
+	public static BookFilter of(boolean available, Integer fromYear, Integer toYear) {
+		int from = fromYear == null ? Integer.MIN_VALUE : fromYear;
+		int to = toYear == null ? Integer.MAX_VALUE : toYear;
+		if (from > to)
+			throw new IllegalArgumentException("fromYear " + from + " is greater than toYear " + to);
+		if (!available && from == Integer.MIN_VALUE && to == Integer.MAX_VALUE)
+			return NONE;
+		return new BookFilter(available, from, to);
+	}
+
+	public boolean isEmpty() {
+		return this == NONE;
+	}
+
+	public boolean hasYearRange() {
+		return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+	}
+
+	public boolean matchesYear(int releaseYear) {
+		return fromYear <= releaseYear && releaseYear <= toYear;
+	}
+
+	public boolean isAvailable() {
+		return available;
+	}
+
+	public int getFromYear() {
+		return fromYear;
+	}
+
+	public int getToYear() {
+		return toYear;
+	}
+}
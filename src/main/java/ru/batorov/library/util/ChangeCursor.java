@@ -0,0 +1,68 @@
+package ru.batorov.library.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque position in the stream of book changes. Encodes
+ * {@code (updated_at, id)} of the last returned change, deletions are
+ * ordered by {@code (deleted_at, book_id)} in the same stream.
+ */
+public class ChangeCursor implements Comparable<ChangeCursor> {
+	public static final ChangeCursor FIRST = new ChangeCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0);
+
+	private final LocalDateTime time;
+	private final int id;
+
+	public ChangeCursor(LocalDateTime time, int id) {
+		this.time = time;
+		this.id = id;
+	}
+
+	/**
+	 * Decode cursor from the token returned by {@link #encode()}. Empty or
+	 * {@literal null} token means the beginning of the stream.
+	 *
+	 * @param token opaque token.
+	 * @return decoded cursor.
+	 * @throws IllegalArgumentException if token is malformed.
+	 */
+	public static ChangeCursor decode(String token) {
+		if (token == null || token.isEmpty())
+			return FIRST;
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("_");
+			if (parts.length == 2)
+				return new ChangeCursor(LocalDateTime.parse(parts[0]), Integer.parseInt(parts[1]));
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			// handled below
+		}
+		throw new IllegalArgumentException("Malformed cursor: " + token);
+	}
+
+	/**
+	 * Encode cursor as opaque url-safe token.
+	 *
+	 * @return opaque token.
+	 */
+	public String encode() {
+		String raw = time + "_" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public LocalDateTime getTime() {
+		return time;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public int compareTo(ChangeCursor other) {
+		int result = time.compareTo(other.time);
+		return result != 0 ? result : Integer.compare(id, other.id);
+	}
+}
@@ -0,0 +1,113 @@
+package ru.batorov.library.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads records of a csv file one by one in the format of the export: fields
+ * are separated by commas, fields with commas, quotes or line breaks are
+ * quoted and quotes in them are doubled. Only the current record is kept in
+ * memory, so the file may be of any size.
+ */
+public class CsvReader {
+	// a longer field means a broken quote, the rest of the file would be read into it
+	private static final int MAX_FIELD_LENGTH = 4096;
+	private static final int NONE = -2;
+
+	private final Reader reader;
+	private int pushedBack = NONE;
+	private long line = 1;
+	private long recordLine;
+
+	/**
+	 * @param reader must not be {@literal null}, should be buffered.
+	 */
+	public CsvReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Return fields of the next record, blank lines are skipped.
+	 *
+	 * @return fields of the record, {@literal null} at the end of the file.
+	 * @throws IOException              if the file can't be read.
+	 * @throws IllegalArgumentException if a field is too long.
+	 */
+	public List<String> next() throws IOException {
+		List<String> fields;
+		do {
+			recordLine = line;
+			int c = read();
+			if (c == -1)
+				return null;
+			fields = record(c);
+		} while (fields.size() == 1 && fields.get(0).isBlank());
+		return fields;
+	}
+
+	/**
+	 * Return one-based number of the line where the last record starts.
+	 *
+	 * @return line of the last record.
+	 */
+	public long getLine() {
+		return recordLine;
+	}
+
+	private List<String> record(int c) throws IOException {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					fields.add(field.toString());
+					return fields;
+				}
+				if (c == '"') {
+					int next = read();
+					if (next != '"') {
+						quoted = false;
+						c = next;
+						continue;
+					}
+				}
+				field.append((char) c);
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\n' || c == '\r' || c == -1) {
+				if (c == '\r') {
+					int next = read();
+					if (next != '\n')
+						pushedBack = next;
+				}
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+			if (field.length() > MAX_FIELD_LENGTH)
+				throw new IllegalArgumentException("Field of the record on line " + recordLine + " is longer than "
+						+ MAX_FIELD_LENGTH + " characters");
+			c = read();
+		}
+	}
+
+	private int read() throws IOException {
+		int c;
+		if (pushedBack != NONE) {
+			c = pushedBack;
+			pushedBack = NONE;
+		} else {
+			c = reader.read();
+		}
+		if (c == '\n')
+			line++;
+		return c;
+	}
+}
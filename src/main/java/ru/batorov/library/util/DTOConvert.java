@@ -1,6 +1,8 @@
 package ru.batorov.library.util;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.modelmapper.ModelMapper;
 
@@ -97,6 +99,15 @@ public class DTOConvert {
 		return books.stream().map(book -> DTOConvert.convertToBookUserDTO(book, modelMapper)).toList();
 	}
 
+	// without ModelMapper, for lists of books
+	public static BookUserDTO convertToBookUserDTO(Book book) {
+		return new BookUserDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getReleaseYear());
+	}
+
+	public static Collection<BookUserDTO> convertToBookUserDTOCollection(Collection<Book> books) {
+		return books.stream().map(DTOConvert::convertToBookUserDTO).toList();
+	}
+
 	public static Collection<BookAdminDTO> convertToBookAdminDTOCollection(
 			Collection<Book> books, ModelMapper modelMapper) {
 		return books.stream().map(book -> DTOConvert.convertToBookAdminDTO(book, modelMapper)).toList();
@@ -133,4 +144,51 @@ public class DTOConvert {
 			ModelMapper modelMapper) {
 		return roles.stream().map(role -> DTOConvert.convertToRoleDTO(role, modelMapper)).toList();
 	}
+
+	public static Map<String, Object> convertToBookFields(Book book, FieldSet fields) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		if (fields.contains("id"))
+			result.put("id", book.getId());
+		if (fields.contains("title"))
+			result.put("title", book.getTitle());
+		if (fields.contains("author"))
+			result.put("author", book.getAuthor());
+		if (fields.contains("releaseYear"))
+			result.put("releaseYear", book.getReleaseYear());
+		if (fields.contains("owner"))
+			result.put("owner", book.getOwner() == null ? null : convertToOwnerFields(book.getOwner()));
+		return result;
+	}
+
+	public static Collection<Map<String, Object>> convertToBookFieldsCollection(Collection<Book> books,
+			FieldSet fields) {
+		return books.stream().map(book -> DTOConvert.convertToBookFields(book, fields)).toList();
+	}
+
+	public static Map<String, Object> convertToPersonFields(Person person, FieldSet fields, ModelMapper modelMapper) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		if (fields.contains("id"))
+			result.put("id", person.getId());
+		if (fields.contains("fullName"))
+			result.put("fullName", person.getFullName());
+		if (fields.contains("yearOfBirth"))
+			result.put("yearOfBirth", person.getYearOfBirth());
+		if (fields.contains("roles"))
+			result.put("roles", convertToRoleDTOCollection(person.getRoles(), modelMapper));
+		return result;
+	}
+
+	public static Collection<Map<String, Object>> convertToPersonFieldsCollection(Collection<Person> persons,
+			FieldSet fields, ModelMapper modelMapper) {
+		return persons.stream().map(person -> DTOConvert.convertToPersonFields(person, fields, modelMapper)).toList();
+	}
+
+	// same fields as PersonUserDTO
+	private static Map<String, Object> convertToOwnerFields(Person owner) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("id", owner.getId());
+		result.put("fullName", owner.getFullName());
+		result.put("yearOfBirth", owner.getYearOfBirth());
+		return result;
+	}
 }
@@ -0,0 +1,56 @@
+package ru.batorov.library.util;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fields of a resource requested by the client with the {@code fields}
+ * parameter, for example {@code fields=id,title}. Fields are kept in the
+ * order they are declared by the resource.
+ */
+public class FieldSet {
+	private final Set<String> names;
+	private final boolean all;
+
+	private FieldSet(Set<String> names, boolean all) {
+		this.names = names;
+		this.all = all;
+	}
+
+	/**
+	 * Parse comma separated field names.
+	 *
+	 * @param fields  requested fields, {@literal null} or blank means all
+	 *                fields.
+	 * @param allowed fields of the resource, must not be {@literal null}.
+	 * @return requested fields.
+	 * @throws IllegalArgumentException if an unknown field is requested.
+	 */
+	public static FieldSet of(String fields, List<String> allowed) {
+		if (fields == null || fields.isBlank())
+			return new FieldSet(new LinkedHashSet<>(allowed), true);
+		Set<String> requested = new LinkedHashSet<>();
+		for (String field : fields.split(",")) {
+			String name = field.trim();
+			if (!allowed.contains(name))
+				throw new IllegalArgumentException("Unknown field " + name + ", allowed fields are " + allowed);
+			requested.add(name);
+		}
+		Set<String> names = new LinkedHashSet<>(allowed);
+		names.retainAll(requested);
+		return new FieldSet(names, names.size() == allowed.size());
+	}
+
+	public boolean contains(String name) {
+		return names.contains(name);
+	}
+
+	public boolean isAll() {
+		return all;
+	}
+
+	public Set<String> getNames() {
+		return names;
+	}
+}
@@ -0,0 +1,69 @@
+package ru.batorov.library.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Validators of a resource for HTTP conditional requests: strong ETag
+ * derived from the values that identify the state of the resource and
+ * optional modification time.
+ */
+public class ResourceVersion {
+	private final String eTag;
+	private final long lastModified;
+
+	private ResourceVersion(String eTag, long lastModified) {
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @param lastModified time of the last modification in milliseconds, -1 if
+	 *                     it is unknown.
+	 * @param state        values that change whenever the representation of the
+	 *                     resource changes, {@literal null} values are allowed.
+	 * @return version of the resource.
+	 */
+	public static ResourceVersion of(long lastModified, Object... state) {
+		String joined = Arrays.stream(state).map(String::valueOf).collect(Collectors.joining("|"));
+		return new ResourceVersion(
+				"\"" + DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8)) + "\"", lastModified);
+	}
+
+	/**
+	 * @param lastModified time of the last modification in the server time zone,
+	 *                     {@literal null} if it is unknown.
+	 * @param state        values that change whenever the representation of the
+	 *                     resource changes, {@literal null} values are allowed.
+	 * @return version of the resource.
+	 */
+	public static ResourceVersion of(LocalDateTime lastModified, Object... state) {
+		return of(lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+				state);
+	}
+
+	/**
+	 * Check If-None-Match and If-Modified-Since of the request and set ETag and
+	 * Last-Modified of the response.
+	 *
+	 * @param request must not be {@literal null}.
+	 * @return true if the client has this version, the response is 304 then.
+	 */
+	public boolean isNotModified(WebRequest request) {
+		return request.checkNotModified(eTag, lastModified);
+	}
+
+	public String getETag() {
+		return eTag;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+}
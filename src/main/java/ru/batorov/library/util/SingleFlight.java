@@ -0,0 +1,90 @@
+package ru.batorov.library.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Coalesces concurrent loads of the same key. The first caller runs the
+ * load, callers that come while it is running wait and get the same result
+ * or exception. Nothing is kept after the load completes, so unlike a cache
+ * results are never older than the request.
+ * <p>
+ * The same result object is handed to every caller, so it must be immutable
+ * and must not contain entities, they belong to the session of the caller
+ * that loaded them. Loads in read-write transactions are never shared, the
+ * caller may see its own uncommitted changes. Keys of loads with different
+ * result types must differ.
+ */
+public class SingleFlight {
+	private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Return result of the running load of the key or run the loader.
+	 *
+	 * @param key    must not be {@literal null}.
+	 * @param loader must not be {@literal null}.
+	 * @return result of the load, may be {@literal null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T load(Object key, Supplier<T> loader) {
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+			return loader.get();
+		CompletableFuture<Object> flight = new CompletableFuture<>();
+		CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+		if (running != null)
+			return (T) join(running);
+		try {
+			T result = loader.get();
+			flight.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			flight.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Stop sharing the loads that are running now, they may have read the data
+	 * before a change. Callers that already wait still get their results.
+	 */
+	public void forget() {
+		inFlight.clear();
+	}
+
+	/**
+	 * {@link #forget()} once the current transaction commits.
+	 */
+	public void forgetAfterCommit() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			forget();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				forget();
+			}
+		});
+	}
+
+	private static Object join(CompletableFuture<Object> running) {
+		try {
+			return running.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause)
+				throw cause;
+			if (e.getCause() instanceof Error cause)
+				throw cause;
+			throw e;
+		}
+	}
+}
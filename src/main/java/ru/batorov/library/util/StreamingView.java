@@ -0,0 +1,60 @@
+package ru.batorov.library.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.View;
+
+/**
+ * View that renders rows pulled while rendering instead of a list built
+ * beforehand. The source opens the rows only for the time of rendering, so
+ * they may come from a database cursor. Thymeleaf writes to the response
+ * while processing, so the page leaves the server in chunks of the response
+ * buffer and memory usage doesn't depend on the number of rows.
+ *
+ * @param <T> type of the rows.
+ */
+public class StreamingView<T> implements View {
+	private final View view;
+	private final String attributeName;
+	private final Consumer<Consumer<Iterator<T>>> source;
+
+	/**
+	 * @param view          renders the page, must not be {@literal null}.
+	 * @param attributeName name of the model attribute with the rows.
+	 * @param source        performs the given action with an iterator of the
+	 *                      rows, must not be {@literal null}.
+	 */
+	public StreamingView(View view, String attributeName, Consumer<Consumer<Iterator<T>>> source) {
+		this.view = view;
+		this.attributeName = attributeName;
+		this.source = source;
+	}
+
+	@Override
+	public String getContentType() {
+		return view.getContentType();
+	}
+
+	@Override
+	public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response)
+			throws Exception {
+		Map<String, Object> merged = model == null ? new HashMap<>() : new HashMap<>(model);
+		Exception[] failure = new Exception[1];
+		source.accept(rows -> {
+			merged.put(attributeName, rows);
+			try {
+				view.render(merged, request, response);
+			} catch (Exception e) {
+				failure[0] = e;
+			}
+		});
+		if (failure[0] != null)
+			throw failure[0];
+	}
+}
@@ -25,5 +25,34 @@ create table IF NOT EXISTS book(
     release_year int not null,
 	take_time timestamp DEFAULT CURRENT_TIMESTAMP,
     created_at timestamp not null DEFAULT CURRENT_TIMESTAMP,
-    updated_at timestamp not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP	
-);
\ No newline at end of file
+    updated_at timestamp not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX book_release_year_id_idx(release_year, id),
+    INDEX book_author_release_year_id_idx(author, release_year, id),
+    INDEX book_person_id_release_year_id_idx(person_id, release_year, id),
+    INDEX book_updated_at_id_idx(updated_at, id)
+);
+-- mysql has no sequences, hibernate takes blocks of ids for books from this table
+create table IF NOT EXISTS book_seq(
+    next_val bigint not null
+);
+INSERT INTO book_seq(next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM book WHERE NOT EXISTS (SELECT * FROM book_seq);
+create table IF NOT EXISTS book_tombstone(
+    book_id int, PRIMARY KEY(book_id),
+    deleted_at timestamp not null DEFAULT CURRENT_TIMESTAMP,
+    INDEX book_tombstone_deleted_at_book_id_idx(deleted_at, book_id)
+);
+-- loan history is only appended and has no foreign keys, it outlives books and people
+create table IF NOT EXISTS loan_event(
+    id bigint AUTO_INCREMENT, PRIMARY KEY(id),
+    book_id int not null,
+    person_id int not null,
+    kind varchar(10) not null,
+    happened_at timestamp not null,
+    INDEX loan_event_book_id_happened_at_idx(book_id, happened_at)
+);
+-- borrow counters are added here periodically, there is no foreign key so late counters of deleted books don't fail
+create table IF NOT EXISTS book_stats(
+    book_id int, PRIMARY KEY(book_id),
+    borrow_count bigint not null,
+    INDEX book_stats_borrow_count_idx(borrow_count)
+);
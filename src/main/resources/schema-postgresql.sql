@@ -27,6 +27,30 @@ create table IF NOT EXISTS book(
     created_at timestamp not null DEFAULT CURRENT_TIMESTAMP,
     updated_at timestamp not null DEFAULT CURRENT_TIMESTAMP	
 );;
+-- ids are given out in blocks of 50 (allocationSize of Book), rows inserted by sql take one id each
+CREATE SEQUENCE IF NOT EXISTS book_seq INCREMENT BY 50;;
+ALTER TABLE book ALTER COLUMN id SET DEFAULT nextval('book_seq');;
+-- moves the sequence past ids given out by serial before it
+SELECT setval('book_seq', (SELECT max(id) FROM book)) WHERE (SELECT max(id) FROM book) >= (SELECT last_value FROM book_seq);;
+CREATE INDEX IF NOT EXISTS book_release_year_id_idx ON book(release_year, id);;
+-- varchar_pattern_ops lets author prefix LIKE use the index whatever the collation is
+CREATE INDEX IF NOT EXISTS book_author_release_year_id_idx ON book(author varchar_pattern_ops, release_year, id);;
+CREATE INDEX IF NOT EXISTS book_person_id_release_year_id_idx ON book(person_id, release_year, id);;
+CREATE INDEX IF NOT EXISTS book_updated_at_id_idx ON book(updated_at, id);;
+create table IF NOT EXISTS book_tombstone(
+    book_id int PRIMARY KEY,
+    deleted_at timestamp not null DEFAULT CURRENT_TIMESTAMP
+);;
+CREATE INDEX IF NOT EXISTS book_tombstone_deleted_at_book_id_idx ON book_tombstone(deleted_at, book_id);;
+-- loan history is only appended and has no foreign keys, it outlives books and people
+create table IF NOT EXISTS loan_event(
+    id bigserial PRIMARY KEY,
+    book_id int not null,
+    person_id int not null,
+    kind varchar(10) not null,
+    happened_at timestamp not null
+);;
+CREATE INDEX IF NOT EXISTS loan_event_book_id_happened_at_idx ON loan_event(book_id, happened_at);;
 CREATE OR REPLACE FUNCTION update_changetimestamp_column()
 RETURNS TRIGGER AS $$
 BEGIN
@@ -39,4 +63,10 @@ CREATE or replace TRIGGER update_ab_changetimestamp BEFORE UPDATE
     update_changetimestamp_column();;
 CREATE or replace TRIGGER update_ab_changetimestamp BEFORE UPDATE
     ON book FOR EACH ROW EXECUTE PROCEDURE 
-    update_changetimestamp_column();;
\ No newline at end of file
+    update_changetimestamp_column();;
+-- borrow counters are added here periodically, there is no foreign key so late counters of deleted books don't fail
+create table IF NOT EXISTS book_stats(
+    book_id int PRIMARY KEY,
+    borrow_count bigint not null
+);;
+CREATE INDEX IF NOT EXISTS book_stats_borrow_count_idx ON book_stats(borrow_count);;
\ No newline at end of file
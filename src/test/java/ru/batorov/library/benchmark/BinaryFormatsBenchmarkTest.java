@@ -0,0 +1,58 @@
+package ru.batorov.library.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import ru.batorov.library.dto.book.BookUserDTO;
+
+/**
+ * Serialization time of the book list in CBOR and Smile compared with JSON.
+ * Timings depend on the machine, so benchmarks aren't run by default, run
+ * them with mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+public class BinaryFormatsBenchmarkTest {
+	private static final int WARM_UP_RUNS = 500;
+	private static final int RUNS = 1500;
+
+	/**
+	 * Test that CBOR and Smile are serialized faster than JSON
+	 */
+	@Test
+	public void serializationTest() throws Exception {
+		List<BookUserDTO> books = new ArrayList<>();
+		for (int i = 1; i <= 1000; i++)
+			books.add(new BookUserDTO(i, "title" + i, "author" + i % 10, 1900 + i % 100));
+
+		for (ObjectMapper mapper : List.of(new ObjectMapper(new CBORFactory()), new ObjectMapper(new SmileFactory()))) {
+			String format = mapper.getFactory().getFormatName();
+			long[] nanos = serializationNanos(new ObjectMapper(), mapper, books);
+			System.out.println(format + " " + nanos[1] + " ns, JSON " + nanos[0] + " ns");
+			assertTrue(nanos[1] < nanos[0],
+					format + " isn't serialized faster than JSON, " + nanos[1] + " ns vs " + nanos[0] + " ns");
+		}
+	}
+
+	// the best time of each mapper, runs alternate after warm-up so that both see the same machine
+	private static long[] serializationNanos(ObjectMapper json, ObjectMapper binary, Object value) throws Exception {
+		ObjectMapper[] mappers = { json, binary };
+		long[] best = { Long.MAX_VALUE, Long.MAX_VALUE };
+		for (int run = 0; run < RUNS; run++)
+			for (int i = 0; i < mappers.length; i++) {
+				long start = System.nanoTime();
+				mappers[i].writeValueAsBytes(value);
+				if (run >= WARM_UP_RUNS)
+					best[i] = Math.min(best[i], System.nanoTime() - start);
+			}
+		return best;
+	}
+}
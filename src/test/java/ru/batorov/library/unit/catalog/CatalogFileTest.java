@@ -0,0 +1,115 @@
+package ru.batorov.library.unit.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ru.batorov.library.catalog.CatalogFile;
+import ru.batorov.library.catalog.CatalogSnapshot;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.util.BookFilter;
+
+/**
+ * Catalog file unit test class
+ */
+public class CatalogFileTest {
+	@TempDir
+	Path directory;
+
+	private static List<String> rows(CatalogSnapshot snapshot, boolean sortByYear) {
+		return snapshot.range(sortByYear, BookFilter.NONE, 0, Integer.MAX_VALUE,
+				(id, title, author, releaseYear, ownerId) -> id + "|" + title + "|" + author + "|" + releaseYear
+						+ "|" + ownerId);
+	}
+
+	/**
+	 * Test that the read snapshot has the same books and watermark as the
+	 * written one
+	 */
+	@Test
+	public void roundTripTest() throws IOException {
+		CatalogSnapshot snapshot = CatalogSnapshot.of(List.of(new BookSnapshot(1, "Dune", "Frank Herbert", 1965, 7),
+				new BookSnapshot(5, "Solaris", "Stanisław Lem", 1961, null),
+				new BookSnapshot(9, "Война и мир", "Лев Толстой", 1869, null)))
+				.without(1).with(new BookSnapshot(3, "Dune", "Frank Herbert", 1965, 7));
+		LocalDateTime watermark = LocalDateTime.of(2023, 7, 1, 12, 30, 15, 123456789);
+		CatalogFile file = new CatalogFile(directory.resolve("nested/catalog.snapshot"));
+
+		file.write(snapshot, watermark);
+		CatalogFile.Saved saved = file.read();
+
+		assertEquals(watermark, saved.getWatermark());
+		assertEquals(rows(snapshot, true), rows(saved.getSnapshot(), true));
+		assertEquals(List.of("3|Dune|Frank Herbert|1965|7", "5|Solaris|Stanisław Lem|1961|null",
+				"9|Война и мир|Лев Толстой|1869|null"), rows(saved.getSnapshot(), false));
+		assertEquals(2, saved.getSnapshot().count(BookFilter.of(true, null, null)));
+	}
+
+	/**
+	 * Test that an empty snapshot is saved and read
+	 */
+	@Test
+	public void emptyTest() throws IOException {
+		CatalogFile file = new CatalogFile(directory.resolve("catalog.snapshot"));
+
+		file.write(CatalogSnapshot.empty(), LocalDateTime.of(2023, 1, 1, 0, 0));
+
+		assertEquals(0, file.read().getSnapshot().size());
+	}
+
+	/**
+	 * Test that missing files and files of other formats aren't used
+	 */
+	@Test
+	public void versionTest() throws IOException {
+		Path path = directory.resolve("catalog.snapshot");
+		CatalogFile file = new CatalogFile(path);
+		assertNull(file.read(), "there is no file yet");
+
+		file.write(CatalogSnapshot.of(List.of(new BookSnapshot(1, "Dune", "Frank Herbert", 1965, null))),
+				LocalDateTime.of(2023, 1, 1, 0, 0));
+		byte[] content = Files.readAllBytes(path);
+		ByteBuffer.wrap(content).putInt(4, 1000);
+		Files.write(path, content);
+		assertNull(file.read(), "a file of another version should be ignored");
+
+		ByteBuffer.wrap(content).putInt(0, 0);
+		Files.write(path, content);
+		assertNull(file.read(), "a file with another magic should be ignored");
+	}
+
+	/**
+	 * Test that truncated and damaged files are reported
+	 */
+	@Test
+	public void damagedTest() throws IOException {
+		Path path = directory.resolve("catalog.snapshot");
+		CatalogFile file = new CatalogFile(path);
+		file.write(CatalogSnapshot.of(List.of(new BookSnapshot(1, "Dune", "Frank Herbert", 1965, null),
+				new BookSnapshot(2, "Solaris", "Stanislaw Lem", 1961, null))), LocalDateTime.of(2023, 1, 1, 0, 0));
+		byte[] content = Files.readAllBytes(path);
+
+		Files.write(path, Arrays.copyOf(content, 10));
+		assertThrows(IOException.class, file::read);
+
+		Files.write(path, Arrays.copyOf(content, content.length - 3));
+		assertThrows(IOException.class, file::read);
+
+		// the second id isn't greater than the first one
+		byte[] unordered = content.clone();
+		ByteBuffer.wrap(unordered).putInt(28 + 4, 1);
+		Files.write(path, unordered);
+		assertThrows(IOException.class, file::read);
+	}
+}
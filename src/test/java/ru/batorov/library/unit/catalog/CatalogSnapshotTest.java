@@ -0,0 +1,173 @@
+package ru.batorov.library.unit.catalog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ru.batorov.library.catalog.CatalogSnapshot;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.util.BookFilter;
+
+/**
+ * Catalog snapshot unit test class. Results are compared with a plain sorted
+ * and filtered list of the same books.
+ */
+public class CatalogSnapshotTest {
+	private static final Comparator<BookSnapshot> BY_ID = Comparator.comparing(BookSnapshot::getId);
+	private static final Comparator<BookSnapshot> BY_YEAR = Comparator.comparing(BookSnapshot::getReleaseYear)
+			.thenComparing(BookSnapshot::getId);
+	private static final List<BookFilter> FILTERS = List.of(BookFilter.NONE, BookFilter.of(true, null, null),
+			BookFilter.of(false, 1995, 2005), BookFilter.of(true, 1995, 2005), BookFilter.of(false, null, 1990),
+			BookFilter.of(true, 2010, null), BookFilter.of(false, 3000, null));
+
+	private final Random random = new Random(42);
+
+	private BookSnapshot randomBook(int id) {
+		return new BookSnapshot(id, "title" + random.nextInt(50), "author" + random.nextInt(20),
+				1980 + random.nextInt(40), random.nextInt(3) == 0 ? random.nextInt(10) + 1 : null);
+	}
+
+	private static List<BookSnapshot> expected(Map<Integer, BookSnapshot> books, boolean sortByYear,
+			BookFilter filter) {
+		return books.values().stream()
+				.filter(book -> !filter.isAvailable() || book.getOwnerId() == null)
+				.filter(book -> filter.matchesYear(book.getReleaseYear()))
+				.sorted(sortByYear ? BY_YEAR : BY_ID)
+				.toList();
+	}
+
+	private static void assertSameBooks(List<BookSnapshot> expected, List<BookSnapshot> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			BookSnapshot first = expected.get(i);
+			BookSnapshot second = actual.get(i);
+			assertEquals(first.getId(), second.getId());
+			assertEquals(first.getTitle(), second.getTitle());
+			assertEquals(first.getAuthor(), second.getAuthor());
+			assertEquals(first.getReleaseYear(), second.getReleaseYear());
+			assertEquals(first.getOwnerId(), second.getOwnerId());
+		}
+	}
+
+	// every page by offset and by key, and counts, for every filter and order
+	private static void assertMatches(Map<Integer, BookSnapshot> books, CatalogSnapshot snapshot) {
+		assertEquals(books.size(), snapshot.size());
+		for (BookFilter filter : FILTERS) {
+			assertEquals(expected(books, false, filter).size(), snapshot.count(filter));
+			for (boolean sortByYear : new boolean[] { false, true }) {
+				List<BookSnapshot> expected = expected(books, sortByYear, filter);
+				assertSameBooks(expected, snapshot.range(sortByYear, filter, 0, Integer.MAX_VALUE));
+				for (int from = 0; from <= expected.size() + 7; from += 7) {
+					List<BookSnapshot> page = expected.subList(Math.min(from, expected.size()),
+							Math.min(from + 7, expected.size()));
+					assertSameBooks(page, snapshot.range(sortByYear, filter, from, 7));
+					if (from > 0 && from <= expected.size()) {
+						BookSnapshot last = expected.get(from - 1);
+						assertSameBooks(page,
+								snapshot.after(sortByYear, filter, last.getReleaseYear(), last.getId(), 7));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test listing, paging and counting of a built snapshot
+	 */
+	@Test
+	public void selectAndCountTest() {
+		Map<Integer, BookSnapshot> books = new HashMap<>();
+		for (int id = 1; id <= 300; id++)
+			if (random.nextInt(4) != 0)
+				books.put(id, randomBook(id));
+		assertMatches(books, CatalogSnapshot.of(books.values()));
+		assertMatches(Map.of(), CatalogSnapshot.empty());
+	}
+
+	/**
+	 * Test that added, changed and removed books give the same results as a
+	 * snapshot built from scratch
+	 */
+	@Test
+	public void withAndWithoutTest() {
+		Map<Integer, BookSnapshot> books = new HashMap<>();
+		CatalogSnapshot snapshot = CatalogSnapshot.empty();
+		for (int i = 0; i < 400; i++) {
+			int id = random.nextInt(150) + 1;
+			if (random.nextInt(3) == 0) {
+				books.remove(id);
+				snapshot = snapshot.without(id);
+			} else {
+				BookSnapshot book = randomBook(id);
+				books.put(id, book);
+				snapshot = snapshot.with(book);
+			}
+		}
+		assertMatches(books, snapshot);
+		assertSame(snapshot, snapshot.without(1000), "removing a missing book should keep the snapshot");
+	}
+
+	/**
+	 * Test that old snapshots don't see changes of the new ones
+	 */
+	@Test
+	public void immutabilityTest() {
+		BookSnapshot first = new BookSnapshot(1, "Dune", "Frank Herbert", 1965, null);
+		BookSnapshot second = new BookSnapshot(2, "Solaris", "Stanislaw Lem", 1961, null);
+		CatalogSnapshot old = CatalogSnapshot.of(List.of(first, second));
+
+		CatalogSnapshot changed = old.with(new BookSnapshot(1, "Dune", "Frank Herbert", 1965, 5)).without(2);
+
+		assertSameBooks(List.of(first, second), old.range(false, 0, 10));
+		assertEquals(2, old.count(BookFilter.of(true, null, null)));
+		assertEquals(1, old.count(BookFilter.of(false, 1961, 1961)));
+		assertEquals(0, changed.count(BookFilter.of(true, null, null)));
+		assertEquals(0, changed.count(BookFilter.of(false, 1961, 1961)));
+	}
+
+	/**
+	 * Test that batched changes give the same snapshot as applied one by one
+	 */
+	@Test
+	public void withChangesTest() {
+		Map<Integer, BookSnapshot> books = new HashMap<>();
+		for (int id = 1; id <= 100; id++)
+			books.put(id, randomBook(id));
+		CatalogSnapshot snapshot = CatalogSnapshot.of(books.values());
+
+		Map<Integer, BookSnapshot> changes = new HashMap<>();
+		for (int id = 90; id <= 110; id++)
+			changes.put(id, id % 2 == 0 ? randomBook(id) : null);
+		changes.forEach((id, book) -> {
+			if (book == null)
+				books.remove(id);
+			else
+				books.put(id, book);
+		});
+		assertMatches(books, snapshot.withChanges(changes));
+	}
+
+	/**
+	 * Test that rows are built by the mapper from the columns
+	 */
+	@Test
+	public void mapperTest() {
+		CatalogSnapshot snapshot = CatalogSnapshot.of(List.of(new BookSnapshot(1, "Dune", "Frank Herbert", 1965, 3),
+				new BookSnapshot(2, "Solaris", "Stanislaw Lem", 1961, null)));
+
+		List<String> rows = new ArrayList<>(snapshot.range(true, BookFilter.NONE, 0, 10,
+				(id, title, author, releaseYear, ownerId) -> id + " " + title + " " + releaseYear + " " + ownerId));
+
+		assertEquals(List.of("2 Solaris 1961 null", "1 Dune 1965 3"), rows);
+		assertEquals(List.of("Dune"), snapshot.after(false, BookFilter.NONE, 0, 0, 1,
+				(id, title, author, releaseYear, ownerId) -> title));
+	}
+}
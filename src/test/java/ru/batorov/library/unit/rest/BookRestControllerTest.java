@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,29 +23,49 @@ import com.fasterxml.jackson.databind.DatabindException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.mysql.cj.exceptions.AssertionFailedException;
 
 import ru.batorov.library.controllers.rest.BookRestController;
+import ru.batorov.library.dto.book.BookChangesDTO;
+import ru.batorov.library.dto.book.BookImportProgressDTO;
+import ru.batorov.library.dto.book.BookLoanResultDTO;
+import ru.batorov.library.dto.book.BookLoanResultDTO.Outcome;
+import ru.batorov.library.dto.book.BookPopularityDTO;
 import ru.batorov.library.dto.book.BookUserDTO;
 import ru.batorov.library.models.Book;
+import ru.batorov.library.models.LoanEvent;
 import ru.batorov.library.models.Person;
+import ru.batorov.library.models.Role;
 import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.repositories.LoanEventRepository;
 import ru.batorov.library.repositories.PeopleRepository;
 import ru.batorov.library.repositories.RolesRepository;
+import ru.batorov.library.security.PersonDetails;
+import ru.batorov.library.services.BookPopularityService;
 import ru.batorov.library.services.BookService;
+import ru.batorov.library.util.BookCursor;
+import ru.batorov.library.util.BookFilter;
+import ru.batorov.library.util.ChangeCursor;
 import ru.batorov.library.util.DTOConvert;
+import ru.batorov.library.util.ResourceVersion;
 import ru.batorov.library.util.exceptions.BookNotFoundException;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static ru.batorov.library.util.DTOConvert.*;
 
@@ -69,9 +90,13 @@ public class BookRestControllerTest {
 	private PeopleRepository peopleRepository;
 	@MockBean
 	private RolesRepository rolesRepository;
+	@MockBean
+	private BookPopularityService bookPopularityService;
 
 	@Autowired
 	private ObjectMapper objectMapper;
+	@Autowired
+	private LoanEventRepository loanEventRepository;
 
 	private final String URL = "/api/books";
 
@@ -104,7 +129,7 @@ public class BookRestControllerTest {
 
 		List<Book> books = List.of(firstBook, secondBook, thirdBook);
 		Collection<BookUserDTO> expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
-		Mockito.when(bookService.all(false)).thenReturn(books);
+		Mockito.when(bookService.all(false, BookFilter.NONE)).thenReturn(books);
 
 		MvcResult result = mvc.perform(get(URL)).andDo(print())
 				.andExpect(status().isOk())
@@ -117,7 +142,7 @@ public class BookRestControllerTest {
 
 		books = List.of(secondBook, firstBook, thirdBook);
 		expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
-		Mockito.when(bookService.all(true)).thenReturn(books);
+		Mockito.when(bookService.all(true, BookFilter.NONE)).thenReturn(books);
 		result = mvc.perform(get(URL).param("sortByYear", "true")).andDo(print())
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -128,17 +153,192 @@ public class BookRestControllerTest {
 
 		books = List.of(secondBook, firstBook);
 		expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
-		Mockito.when(bookService.all(Mockito.eq(true), Mockito.any(), Mockito.any())).thenReturn(books);
+		Mockito.when(bookService.all(Mockito.eq(true), Mockito.eq(BookFilter.NONE), Mockito.any(), Mockito.any()))
+				.thenReturn(books);
+		Mockito.when(bookService.count(BookFilter.NONE)).thenReturn(3L);
 		result = mvc.perform(get(URL).param("sortByYear", "true").param("page", "1").param("itemsPerPage", "2"))
 				.andDo(print())
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(header().string(BookRestController.TOTAL_COUNT_HEADER, "3"))
 				.andReturn();
 		content = result.getResponse().getContentAsString();
 		actual = objectMapper.readValue(content, constructCollectionType);
 		assertTrue(expected.equals(actual));
 	}
 
+	/**
+	 * Test /books get request with cursor pagination
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void allAfterTest() throws Exception {
+		CollectionType constructCollectionType = objectMapper.getTypeFactory()
+				.constructCollectionType(Collection.class, BookUserDTO.class);
+		Book firstBook = new Book("title1", "author1", 10);
+		firstBook.setId(1);
+		Book secondBook = new Book("title2", "author2", 1);
+		secondBook.setId(2);
+
+		List<Book> books = List.of(secondBook, firstBook);
+		Collection<BookUserDTO> expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
+		Mockito.when(bookService.allAfter(Mockito.eq(true), Mockito.eq(BookFilter.NONE), Mockito.any(), Mockito.eq(2)))
+				.thenReturn(books);
+		MvcResult result = mvc.perform(get(URL).param("sortByYear", "true").param("after", "").param("itemsPerPage", "2"))
+				.andDo(print())
+				.andExpect(status().isOk())
+				.andExpect(header().string(BookRestController.NEXT_CURSOR_HEADER,
+						BookCursor.after(firstBook, true).encode(true)))
+				.andReturn();
+		Collection<BookUserDTO> actual = objectMapper.readValue(result.getResponse().getContentAsString(),
+				constructCollectionType);
+		assertEquals(expected, actual);
+
+		Mockito.when(bookService.allAfter(Mockito.eq(true), Mockito.eq(BookFilter.NONE), Mockito.any(), Mockito.eq(3)))
+				.thenReturn(books);
+		mvc.perform(get(URL).param("sortByYear", "true").param("after", "").param("itemsPerPage", "3"))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(BookRestController.NEXT_CURSOR_HEADER));
+
+		mvc.perform(get(URL).param("after", "not a cursor"))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Test /books get request with available and release year filter
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void allAvailableTest() throws Exception {
+		CollectionType constructCollectionType = objectMapper.getTypeFactory()
+				.constructCollectionType(Collection.class, BookUserDTO.class);
+		Book firstBook = new Book("title1", "author1", 1990);
+		firstBook.setId(1);
+		Book secondBook = new Book("title2", "author2", 2000);
+		secondBook.setId(2);
+
+		List<Book> books = List.of(firstBook, secondBook);
+		Collection<BookUserDTO> expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
+		ArgumentMatcher<BookFilter> filter = f -> f.isAvailable() && f.getFromYear() == 1990 && f.getToYear() == 2000;
+		Mockito.when(bookService.all(Mockito.eq(false), Mockito.argThat(filter), Mockito.eq(0), Mockito.eq(2)))
+				.thenReturn(books);
+		Mockito.when(bookService.count(Mockito.argThat(filter))).thenReturn(2L);
+		MvcResult result = mvc.perform(get(URL).param("available", "true").param("fromYear", "1990")
+				.param("toYear", "2000").param("page", "0").param("itemsPerPage", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(BookRestController.TOTAL_COUNT_HEADER, "2"))
+				.andReturn();
+		Collection<BookUserDTO> actual = objectMapper.readValue(result.getResponse().getContentAsString(),
+				constructCollectionType);
+		assertEquals(expected, actual);
+
+		mvc.perform(get(URL).param("fromYear", "2000").param("toYear", "1990"))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Test of /filter request
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void filterTest() throws Exception {
+		String FILTER_URL = URL + "/filter";
+		CollectionType constructCollectionType = objectMapper.getTypeFactory()
+				.constructCollectionType(Collection.class, BookUserDTO.class);
+		Book firstBook = new Book("title1", "author1", 10);
+		firstBook.setId(1);
+		Book secondBook = new Book("title2", "author1", 20);
+		secondBook.setId(2);
+
+		List<Book> books = List.of(firstBook, secondBook);
+		Collection<BookUserDTO> expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
+		Mockito.when(bookService.filter(Mockito.any(), Mockito.eq(false), Mockito.eq(BookCursor.FIRST), Mockito.eq(2)))
+				.thenReturn(books);
+		MvcResult result = mvc.perform(get(FILTER_URL).param("author", "author1").param("taken", "false")
+				.param("itemsPerPage", "2"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(BookRestController.NEXT_CURSOR_HEADER,
+						BookCursor.after(secondBook, false).encode(false)))
+				.andReturn();
+		Collection<BookUserDTO> actual = objectMapper.readValue(result.getResponse().getContentAsString(),
+				constructCollectionType);
+		assertEquals(expected, actual);
+
+		mvc.perform(get(FILTER_URL).param("itemsPerPage", "0"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get(FILTER_URL).param("ownerId", "1"))
+				.andExpect(status().isForbidden());
+	}
+
+	/**
+	 * Test of conditional requests
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void notModifiedTest() throws Exception {
+		Mockito.when(bookService.all(false, BookFilter.NONE)).thenReturn(List.of());
+		String eTag = mvc.perform(get(URL))
+				.andExpect(status().isOk())
+				.andExpect(header().exists("ETag"))
+				.andReturn().getResponse().getHeader("ETag");
+		mvc.perform(get(URL).header("If-None-Match", eTag))
+				.andExpect(status().isNotModified());
+
+		ResourceVersion version = ResourceVersion.of(1000, "book", 1);
+		Mockito.when(bookService.findVersion(1, null)).thenReturn(version);
+		mvc.perform(get(URL + "/1").header("If-None-Match", version.getETag()))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("ETag", version.getETag()));
+		Mockito.verify(bookService, Mockito.never()).getBookByIdWithOwner(1);
+	}
+
+	/**
+	 * Test of /changes request
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void changesTest() throws Exception {
+		String CHANGES_URL = URL + "/changes";
+		ChangeCursor since = new ChangeCursor(LocalDateTime.of(2023, 1, 1, 12, 0), 5);
+		BookChangesDTO changes = new BookChangesDTO(List.of(new BookUserDTO(7, "title7", "author7", 70)),
+				List.of(6), new ChangeCursor(LocalDateTime.of(2023, 1, 1, 12, 1), 7).encode(), false);
+		Mockito.when(bookService.changes(Mockito.argThat(cursor -> cursor.compareTo(since) == 0), Mockito.eq(2)))
+				.thenReturn(changes);
+		mvc.perform(get(CHANGES_URL).param("since", since.encode()).param("itemsPerPage", "2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.changed[0].id", is(7)))
+				.andExpect(jsonPath("$.deleted[0]", is(6)))
+				.andExpect(jsonPath("$.next", is(changes.getNext())))
+				.andExpect(jsonPath("$.hasMore", is(false)));
+
+		mvc.perform(get(CHANGES_URL).param("since", "not a cursor"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get(CHANGES_URL).param("itemsPerPage", "0"))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Test that pages of /search/ranked are bounded
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void searchRankedTest() throws Exception {
+		String RANKED_URL = URL + "/search/ranked";
+		Mockito.when(bookService.findBooksRanked("dune", 0, 100)).thenReturn(List.of());
+		mvc.perform(get(RANKED_URL).param("query", "dune").param("itemsPerPage", "100"))
+				.andExpect(status().isOk());
+		mvc.perform(get(RANKED_URL).param("query", "dune").param("itemsPerPage", "101"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get(RANKED_URL).param("query", "dune").param("page", "-1"))
+				.andExpect(status().isBadRequest());
+	}
+
 	/**
 	 * Test of /search request
 	 * 
@@ -172,7 +372,7 @@ public class BookRestControllerTest {
 	private void searchRequestAndAssert(String searchRequest, String URL, List<Book> books,
 			CollectionType constructCollectionType) throws Exception {
 		Collection<BookUserDTO> expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
-		Mockito.when(bookService.findBooksByTitleContaining(Mockito.any())).thenReturn(books);
+		Mockito.when(bookService.findBookDTOsByTitleContaining(Mockito.any())).thenReturn(List.copyOf(expected));
 		MvcResult result = mvc.perform(get(URL).param("findRequest", "searchRequest")).andDo(print())
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -244,4 +444,219 @@ public class BookRestControllerTest {
 				.andExpect(content().string(containsString("There is no book with the required id")));
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Test of fields parameter
+	 * @throws Exception
+	 */
+	@Test
+	public void fieldsTest() throws Exception {
+		Book firstBook = new Book("title1", "author1", 10);
+		firstBook.setId(1);
+		Person personOne = new Person();
+		personOne.setId(10);
+		personOne.setFullName("personOne");
+		firstBook.setOwner(personOne);
+
+		Mockito.when(bookService.all(false, BookFilter.NONE)).thenReturn(List.of(firstBook));
+		mvc.perform(get(URL).param("fields", "title,id"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[{\"id\":1,\"title\":\"title1\"}]", true));
+
+		Mockito.when(bookService.getBookByIdWithOwner(1)).thenReturn(Book.shallowCopy(firstBook));
+		mvc.perform(get(URL + "/1").param("fields", "id,owner"))
+				.andExpect(status().isOk())
+				.andExpect(content().json(
+						"{\"id\":1,\"owner\":{\"id\":null,\"fullName\":null,\"yearOfBirth\":null}}", true));
+
+		mvc.perform(get(URL).param("fields", "id,password"))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Test of CBOR and Smile responses, they must contain the same DTOs as JSON
+	 * and be smaller. Serialization time is compared by BinaryFormatsBenchmarkTest
+	 * @throws Exception
+	 */
+	@Test
+	public void binaryFormatsTest() throws Exception {
+		List<Book> books = new ArrayList<>();
+		for (int i = 1; i <= 1000; i++) {
+			Book book = new Book("title" + i, "author" + i % 10, 1900 + i % 100);
+			book.setId(i);
+			books.add(book);
+		}
+		Collection<BookUserDTO> expected = DTOConvert.convertToBookUserDTOCollection(books, modelMapper);
+		Mockito.when(bookService.all(false, BookFilter.NONE)).thenReturn(books);
+
+		byte[] json = mvc.perform(get(URL).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsByteArray();
+		for (ObjectMapper mapper : List.of(new ObjectMapper(new CBORFactory()), new ObjectMapper(new SmileFactory()))) {
+			MediaType mediaType = mapper.getFactory() instanceof CBORFactory ? MediaType.APPLICATION_CBOR
+					: new MediaType("application", "x-jackson-smile");
+			byte[] content = mvc.perform(get(URL).accept(mediaType))
+					.andExpect(status().isOk())
+					.andExpect(content().contentTypeCompatibleWith(mediaType))
+					.andReturn().getResponse().getContentAsByteArray();
+			Collection<BookUserDTO> actual = mapper.readValue(content,
+					mapper.getTypeFactory().constructCollectionType(Collection.class, BookUserDTO.class));
+			assertEquals(expected, actual);
+			assertTrue(content.length < json.length, mediaType + " isn't smaller than json");
+		}
+	}
+
+	// signed in person with the single role
+	private static PersonDetails personDetails(int id, String username, String roleName) {
+		Role role = new Role();
+		role.setName(roleName);
+		Person person = new Person();
+		person.setId(id);
+		person.setUsername(username);
+		person.setRoles(List.of(role));
+		return new PersonDetails(person);
+	}
+
+	/**
+	 * Test of addowner, taken book is a conflict
+	 * @throws Exception
+	 */
+	@Test
+	public void addOwnerTest() throws Exception {
+		PersonDetails personDetails = personDetails(10, "user", "ROLE_USER");
+
+		Mockito.when(bookService.checkout(1, 10)).thenReturn(true);
+		mvc.perform(patch(URL + "/1/addowner").with(user(personDetails)))
+				.andExpect(status().isOk());
+
+		Mockito.when(bookService.checkout(2, 10)).thenReturn(false);
+		mvc.perform(patch(URL + "/2/addowner").with(user(personDetails)))
+				.andExpect(status().isConflict());
+
+		mvc.perform(patch(URL + "/1/addowner").param("ownersId", "11").with(user(personDetails)))
+				.andExpect(status().isForbidden());
+		Mockito.verify(bookService, Mockito.never()).checkout(1, 11);
+	}
+
+	/**
+	 * Test of bulk addowner and release, outcomes are returned for every id
+	 * @throws Exception
+	 */
+	@Test
+	public void bulkLoanTest() throws Exception {
+		PersonDetails personDetails = personDetails(10, "user", "ROLE_USER");
+
+		Mockito.when(bookService.checkoutAll(List.of(1, 2, 3), 10)).thenReturn(List.of(
+				new BookLoanResultDTO(1, Outcome.DONE), new BookLoanResultDTO(2, Outcome.TAKEN),
+				new BookLoanResultDTO(3, Outcome.NOT_FOUND)));
+		mvc.perform(patch(URL + "/addowner").with(user(personDetails))
+				.contentType(MediaType.APPLICATION_JSON).content("[1,2,3]"))
+				.andExpect(status().isOk())
+				.andExpect(content().json(
+						"[{\"id\":1,\"outcome\":\"DONE\"},{\"id\":2,\"outcome\":\"TAKEN\"},{\"id\":3,\"outcome\":\"NOT_FOUND\"}]",
+						true));
+
+		Mockito.when(bookService.releaseAll(List.of(1, 2), 10)).thenReturn(List.of(
+				new BookLoanResultDTO(1, Outcome.DONE), new BookLoanResultDTO(2, Outcome.NOT_OWNER)));
+		mvc.perform(patch(URL + "/release").with(user(personDetails))
+				.contentType(MediaType.APPLICATION_JSON).content("[1,2]"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[{\"id\":1,\"outcome\":\"DONE\"},{\"id\":2,\"outcome\":\"NOT_OWNER\"}]", true));
+
+		mvc.perform(patch(URL + "/addowner").param("ownersId", "11").with(user(personDetails))
+				.contentType(MediaType.APPLICATION_JSON).content("[1]"))
+				.andExpect(status().isForbidden());
+		mvc.perform(patch(URL + "/release").contentType(MediaType.APPLICATION_JSON).content("[1]"))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	public void exportTest() throws Exception {
+		Book firstBook = new Book("title1", "author1", 10);
+		firstBook.setId(1);
+		Book secondBook = new Book("title, \"2\"", "author2", 1);
+		secondBook.setId(2);
+		Mockito.doAnswer(invocation -> {
+			Consumer<Book> action = invocation.getArgument(1);
+			action.accept(firstBook);
+			action.accept(secondBook);
+			return null;
+		}).when(bookService).forEachBook(Mockito.eq(false), Mockito.any());
+
+		MvcResult result = mvc.perform(get(URL + "/export").param("format", "csv"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		assertEquals(Duration.ofHours(1).toMillis(), result.getRequest().getAsyncContext().getTimeout(),
+				"export should have its own timeout");
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("text/csv;charset=UTF-8"))
+				.andExpect(content().string("id,title,author,releaseYear\n"
+						+ "1,title1,author1,10\n"
+						+ "2,\"title, \"\"2\"\"\",author2,1\n"));
+
+		mvc.perform(get(URL + "/export").param("format", "xml"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void importTest() throws Exception {
+		PersonDetails personDetails = personDetails(1, "admin", "ROLE_ADMIN");
+
+		String csv = "id,title,author,releaseYear\n"
+				+ "1,\"Imported, first\",Author,2001\n"
+				+ "2,x,Author,2002\r\n"
+				+ "3,Imported second,Author,year\n"
+				+ "4,\"Imported\nthird\",Author,2003\n";
+		MvcResult result = mvc.perform(post(URL + "/import").param("format", "csv").with(user(personDetails))
+				.contentType("text/csv").content(csv))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String[] lines = mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString().split("\n");
+		assertEquals("{\"line\":3,\"errors\":\"title - title between 2 and 30;\"}", lines[0]);
+		assertEquals("{\"line\":4,\"errors\":\"releaseYear - should be a number;\"}", lines[1]);
+		BookImportProgressDTO progress = objectMapper.readValue(lines[lines.length - 1], BookImportProgressDTO.class);
+		assertTrue(progress.isDone());
+		assertEquals(4, progress.getRead());
+		assertEquals(2, progress.getImported());
+		assertEquals(2, progress.getRejected());
+
+		mvc.perform(post(URL + "/import").param("format", "xml").with(user(personDetails)).content(""))
+				.andExpect(status().isBadRequest());
+		mvc.perform(post(URL + "/import").with(user(personDetails(1, "admin", "ROLE_USER"))).content(""))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	public void loansTest() throws Exception {
+		PersonDetails personDetails = personDetails(1, "admin", "ROLE_ADMIN");
+
+		LocalDateTime taken = LocalDateTime.of(2020, 1, 1, 10, 0);
+		loanEventRepository.insertAll(List.of(
+				new LoanEvent(1000, 5, LoanEvent.Kind.TAKEN, taken),
+				new LoanEvent(1000, 5, LoanEvent.Kind.RETURNED, taken.plusDays(3)),
+				new LoanEvent(1001, 6, LoanEvent.Kind.TAKEN, taken)));
+		mvc.perform(get(URL + "/1000/loans").with(user(personDetails)))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[{\"personId\":5,\"kind\":\"RETURNED\",\"happenedAt\":\"2020-01-04T10:00:00\"},"
+						+ "{\"personId\":5,\"kind\":\"TAKEN\",\"happenedAt\":\"2020-01-01T10:00:00\"}]", true));
+		mvc.perform(get(URL + "/1000/loans").param("itemsPerPage", "1").param("page", "1").with(user(personDetails)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].kind").value("TAKEN"));
+
+		mvc.perform(get(URL + "/1000/loans").with(user(personDetails(1, "admin", "ROLE_USER"))))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	public void popularTest() throws Exception {
+		Mockito.when(bookPopularityService.mostBorrowed()).thenReturn(List.of(
+				new BookPopularityDTO(2, "Second", "Author", 2001, 7),
+				new BookPopularityDTO(1, "First", "Author", 2000, 3)));
+		mvc.perform(get(URL + "/popular"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[{\"id\":2,\"title\":\"Second\",\"author\":\"Author\",\"releaseYear\":2001,\"borrowCount\":7},"
+						+ "{\"id\":1,\"title\":\"First\",\"author\":\"Author\",\"releaseYear\":2000,\"borrowCount\":3}]", true));
+	}
+}
@@ -0,0 +1,104 @@
+package ru.batorov.library.unit.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.search.BookLuceneIndex;
+
+/**
+ * Lucene book index unit test class
+ */
+public class BookLuceneIndexTest {
+	@TempDir
+	Path directory;
+
+	private static BookSnapshot book(int id, String title, String author, Integer releaseYear) {
+		return new BookSnapshot(id, title, author, releaseYear, null);
+	}
+
+	private static List<Integer> ids(List<BookSnapshot> books) {
+		return books.stream().map(BookSnapshot::getId).toList();
+	}
+
+	/**
+	 * Test that typos and unfinished words match and title matches rank above
+	 * author matches
+	 */
+	@Test
+	public void searchTest() throws IOException {
+		try (BookLuceneIndex index = new BookLuceneIndex(directory)) {
+			index.put(book(1, "Foundation", "Isaac Asimov", 1951));
+			index.put(book(2, "Memoirs", "Foundation Press", 1990));
+			index.put(book(3, "Dune", "Frank Herbert", null));
+			index.refresh();
+
+			assertEquals(List.of(1, 2), ids(index.search("foundation", 0, 10)));
+			assertEquals(List.of(1, 2), ids(index.search("Fundation", 0, 10)), "a typo should match");
+			assertEquals(List.of(1, 2), ids(index.search("found", 0, 10)), "a prefix should match");
+			assertEquals(List.of(3), ids(index.search("herbert", 0, 10)));
+			assertTrue(index.search("", 0, 10).isEmpty());
+
+			BookSnapshot dune = index.search("dune", 0, 10).get(0);
+			assertEquals("Dune", dune.getTitle());
+			assertEquals("Frank Herbert", dune.getAuthor());
+			assertEquals(null, dune.getReleaseYear());
+			assertEquals(1951, index.search("asimov", 0, 10).get(0).getReleaseYear());
+		}
+	}
+
+	/**
+	 * Test pages of the results
+	 */
+	@Test
+	public void pageTest() throws IOException {
+		try (BookLuceneIndex index = new BookLuceneIndex(directory)) {
+			for (int id = 1; id <= 5; id++)
+				index.put(book(id, "Tale " + id, "author", 2000));
+			index.refresh();
+
+			assertEquals(2, index.search("tale", 0, 2).size());
+			assertEquals(2, index.search("tale", 1, 2).size());
+			assertEquals(1, index.search("tale", 2, 2).size());
+			assertTrue(index.search("tale", 3, 2).isEmpty());
+			assertTrue(index.search("tale", Integer.MAX_VALUE, 100).isEmpty(), "a far page should not overflow");
+			assertTrue(index.search("tale", 1, Integer.MAX_VALUE).isEmpty());
+		}
+	}
+
+	/**
+	 * Test that changes are seen after refresh and committed changes survive
+	 * reopening
+	 */
+	@Test
+	public void changesTest() throws IOException {
+		try (BookLuceneIndex index = new BookLuceneIndex(directory)) {
+			index.put(book(1, "Dune", "Frank Herbert", 1965));
+			index.refresh();
+			index.put(book(1, "Solaris", "Stanislaw Lem", 1961));
+			assertEquals(List.of(1), ids(index.search("dune", 0, 10)), "not refreshed yet");
+			index.refresh();
+			assertTrue(index.search("dune", 0, 10).isEmpty());
+			assertEquals(List.of(1), ids(index.search("solaris", 0, 10)));
+
+			index.put(book(2, "Dune", "Frank Herbert", 1965));
+			index.remove(1);
+			index.commit();
+		}
+		try (BookLuceneIndex index = new BookLuceneIndex(directory)) {
+			assertTrue(index.search("solaris", 0, 10).isEmpty());
+			assertEquals(List.of(2), ids(index.search("dune", 0, 10)));
+
+			index.replaceAll(List.of(book(3, "Solaris", "Stanislaw Lem", 1961)));
+			assertTrue(index.search("dune", 0, 10).isEmpty());
+			assertEquals(List.of(3), ids(index.search("solaris", 0, 10)));
+		}
+	}
+}
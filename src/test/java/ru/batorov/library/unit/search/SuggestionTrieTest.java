@@ -0,0 +1,95 @@
+package ru.batorov.library.unit.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ru.batorov.library.search.SuggestionTrie;
+
+/**
+ * Suggestion trie unit test class
+ */
+public class SuggestionTrieTest {
+
+	/**
+	 * Test that completions are the heaviest phrases with the prefix, ties
+	 * ordered by phrase
+	 */
+	@Test
+	public void completeTest() {
+		SuggestionTrie trie = new SuggestionTrie(2);
+		trie.add("Dune", 1);
+		trie.add("Dune Messiah", 3);
+		trie.add("Dubliners", 1);
+		trie.add("Solaris", 5);
+
+		assertEquals(List.of("Dune Messiah", "Dubliners"), trie.complete("du"));
+		assertEquals(List.of("Dune Messiah", "Dune"), trie.complete("DUNE"));
+		assertEquals(List.of("Solaris", "Dune Messiah"), trie.complete(""));
+		assertEquals(List.of(), trie.complete("dux"));
+		assertEquals(List.of(), trie.complete("dune messiahs"));
+
+		trie.add("Dune", 3);
+		assertEquals(List.of("Dune", "Dune Messiah"), trie.complete("du"));
+	}
+
+	/**
+	 * Test that a phrase ending inside an edge and phrases diverging inside an
+	 * edge split it
+	 */
+	@Test
+	public void edgeSplitTest() {
+		SuggestionTrie trie = new SuggestionTrie(10);
+		trie.add("tender", 1);
+		trie.add("ten", 2);
+		trie.add("tea", 3);
+
+		assertEquals(List.of("tea", "ten", "tender"), trie.complete("t"));
+		assertEquals(List.of("tea", "ten", "tender"), trie.complete("te"));
+		assertEquals(List.of("ten", "tender"), trie.complete("ten"));
+		assertEquals(List.of("tender"), trie.complete("tend"));
+		assertEquals(List.of("tea"), trie.complete("tea"));
+	}
+
+	/**
+	 * Test that removed phrases leave no empty nodes and single children are
+	 * merged back, so the trie keeps answering
+	 */
+	@Test
+	public void compactionTest() {
+		SuggestionTrie trie = new SuggestionTrie(10);
+		trie.add("tender", 1);
+		trie.add("ten", 2);
+		trie.add("tea", 3);
+
+		trie.add("ten", -2);
+		assertEquals(List.of("tea", "tender"), trie.complete("te"));
+		assertEquals(List.of("tender"), trie.complete("ten"));
+
+		trie.add("tea", -5);
+		assertEquals(List.of("tender"), trie.complete("t"));
+		assertEquals(List.of(), trie.complete("tea"));
+
+		trie.add("tender", -1);
+		assertEquals(List.of(), trie.complete(""));
+
+		trie.add("tea", 1);
+		assertEquals(List.of("tea"), trie.complete("t"));
+	}
+
+	/**
+	 * Test that lowering weight of a missing phrase doesn't add it
+	 */
+	@Test
+	public void missingPhraseTest() {
+		SuggestionTrie trie = new SuggestionTrie(10);
+		trie.add("tender", 1);
+
+		trie.add("ten", -1);
+		trie.add("tea", -1);
+		assertEquals(List.of("tender"), trie.complete("te"));
+		assertEquals(List.of(), trie.complete("tea"));
+	}
+}
@@ -0,0 +1,88 @@
+package ru.batorov.library.unit.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.search.TrigramIndex;
+
+/**
+ * Trigram index unit test class
+ */
+public class TrigramIndexTest {
+
+	private static BookSnapshot book(int id, String title) {
+		return new BookSnapshot(id, title, "author", 2000, null);
+	}
+
+	private static List<Integer> ids(List<BookSnapshot> books) {
+		return books.stream().map(BookSnapshot::getId).toList();
+	}
+
+	/**
+	 * Test that results are the books which title contains the request ordered
+	 * by id
+	 */
+	@Test
+	public void searchTest() {
+		TrigramIndex index = new TrigramIndex();
+		index.put(book(3, "The Hobbit"));
+		index.put(book(1, "Hobbit tales"));
+		index.put(book(2, "Dune"));
+
+		assertEquals(List.of(1, 3), ids(index.search("Hobbit")));
+		assertEquals(List.of(2), ids(index.search("Dune")));
+		assertTrue(index.search("Hobbits").isEmpty(), "all trigrams are indexed but the title doesn't contain it");
+		assertTrue(index.search("xyz").isEmpty());
+		assertEquals(3, index.size());
+	}
+
+	/**
+	 * Test that search is case sensitive like title LIKE '%request%'
+	 */
+	@Test
+	public void caseSensitiveTest() {
+		TrigramIndex index = new TrigramIndex();
+		index.put(book(1, "The Hobbit"));
+
+		assertTrue(index.search("hobbit").isEmpty());
+		assertEquals(List.of(1), ids(index.search("Hobbit")));
+	}
+
+	/**
+	 * Test that requests shorter than a trigram check every book
+	 */
+	@Test
+	public void shortRequestTest() {
+		TrigramIndex index = new TrigramIndex();
+		index.put(book(1, "It"));
+		index.put(book(2, "Kitten"));
+		index.put(book(3, "Dune"));
+
+		assertEquals(List.of(1, 2), ids(index.search("t")));
+		assertEquals(List.of(1, 2, 3), ids(index.search("")));
+	}
+
+	/**
+	 * Test that replaced and removed books don't stay in postings
+	 */
+	@Test
+	public void putAndRemoveTest() {
+		TrigramIndex index = new TrigramIndex();
+		index.put(book(1, "The Hobbit"));
+		index.put(book(1, "Dune"));
+
+		assertTrue(index.search("Hobbit").isEmpty());
+		assertEquals(List.of(1), ids(index.search("Dune")));
+		assertEquals(1, index.size());
+
+		index.remove(1);
+		index.remove(42);
+		assertTrue(index.search("Dune").isEmpty());
+		assertEquals(0, index.size());
+	}
+}
@@ -0,0 +1,126 @@
+package ru.batorov.library.unit.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import ru.batorov.library.dto.book.BookFacetDTO;
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookChangedEvent.Type;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookRepository;
+import ru.batorov.library.services.BookFacetService;
+
+/**
+ * Book facet service unit test class
+ */
+public class BookFacetServiceTest {
+	private final BookRepository bookRepository = Mockito.mock(BookRepository.class);
+	private final BookFacetService bookFacetService = new BookFacetService(bookRepository);
+
+	private static BookRepository.FacetCount row(String author, int decade, long total, long available) {
+		return new BookRepository.FacetCount() {
+			public String getAuthor() {
+				return author;
+			}
+
+			public Integer getDecade() {
+				return decade;
+			}
+
+			public long getTotal() {
+				return total;
+			}
+
+			public long getAvailable() {
+				return available;
+			}
+		};
+	}
+
+	// value:count/available of every facet in the order they are returned
+	private static List<String> facets(Collection<BookFacetDTO> facets) {
+		return facets.stream().map(facet -> facet.getValue() + ":" + facet.getCount() + "/" + facet.getAvailable())
+				.toList();
+	}
+
+	/**
+	 * Test that counters are seeded by the grouped query once
+	 */
+	@Test
+	public void seedTest() {
+		Mockito.when(bookRepository.countFacets()).thenReturn(List.of(row("Lem", 1960, 2, 1),
+				row("Herbert", 1960, 3, 3), row("Lem", 1970, 1, 0), row("Asimov", 1950, 1, 1)));
+
+		assertEquals(List.of("Herbert:3/3", "Lem:3/1", "Asimov:1/1"),
+				facets(bookFacetService.facets().getAuthors()));
+		assertEquals(List.of("1950:1/1", "1960:5/4", "1970:1/0"), facets(bookFacetService.facets().getDecades()));
+		bookFacetService.seed();
+		Mockito.verify(bookRepository, Mockito.times(1)).countFacets();
+	}
+
+	/**
+	 * Test that every kind of change moves the counters
+	 */
+	@Test
+	public void changesTest() {
+		Mockito.when(bookRepository.countFacets()).thenReturn(List.of(row("Lem", 1960, 1, 1)));
+		bookFacetService.seed();
+		BookSnapshot solaris = new BookSnapshot(1, "Solaris", "Lem", 1961, null);
+		BookSnapshot dune = new BookSnapshot(2, "Dune", "Herbert", 1965, null);
+		BookSnapshot takenDune = new BookSnapshot(2, "Dune", "Herbert", 1965, 7);
+		BookSnapshot movedDune = new BookSnapshot(2, "Dune", "Frank Herbert", 1975, 7);
+
+		bookFacetService.onBookChanged(new BookChangedEvent(Type.CREATED, null, dune));
+		assertEquals(List.of("Herbert:1/1", "Lem:1/1"), facets(bookFacetService.facets().getAuthors()));
+		assertEquals(List.of("1960:2/2"), facets(bookFacetService.facets().getDecades()));
+
+		bookFacetService.onBookChanged(new BookChangedEvent(Type.OWNER_CHANGED, dune, takenDune));
+		assertEquals(List.of("Herbert:1/0", "Lem:1/1"), facets(bookFacetService.facets().getAuthors()));
+		assertEquals(List.of("1960:2/1"), facets(bookFacetService.facets().getDecades()));
+
+		bookFacetService.onBookChanged(new BookChangedEvent(Type.UPDATED, takenDune, movedDune));
+		assertEquals(List.of("Frank Herbert:1/0", "Lem:1/1"), facets(bookFacetService.facets().getAuthors()));
+		assertEquals(List.of("1960:1/1", "1970:1/0"), facets(bookFacetService.facets().getDecades()));
+
+		bookFacetService.onBookChanged(new BookChangedEvent(Type.DELETED, solaris, null));
+		assertEquals(List.of("Frank Herbert:1/0"), facets(bookFacetService.facets().getAuthors()));
+		assertEquals(List.of("1970:1/0"), facets(bookFacetService.facets().getDecades()));
+	}
+
+	/**
+	 * Test that changes before seeding are left to the seeding query
+	 */
+	@Test
+	public void changesBeforeSeedTest() {
+		Mockito.when(bookRepository.countFacets()).thenReturn(List.of(row("Lem", 1960, 1, 1)));
+
+		bookFacetService.onBookChanged(
+				new BookChangedEvent(Type.CREATED, null, new BookSnapshot(1, "Solaris", "Lem", 1961, null)));
+
+		assertEquals(List.of("Lem:1/1"), facets(bookFacetService.facets().getAuthors()));
+	}
+
+	/**
+	 * Test that changes that come while the seeding query runs are applied
+	 * after it
+	 */
+	@Test
+	public void changesWhileSeedingTest() {
+		Mockito.when(bookRepository.countFacets()).thenAnswer(invocation -> {
+			// committed after the query has read the rows
+			bookFacetService.onBookChanged(
+					new BookChangedEvent(Type.CREATED, null, new BookSnapshot(2, "Dune", "Herbert", 1965, null)));
+			return List.of(row("Lem", 1960, 1, 1));
+		});
+
+		bookFacetService.seed();
+
+		assertEquals(List.of("Herbert:1/1", "Lem:1/1"), facets(bookFacetService.facets().getAuthors()));
+		assertEquals(List.of("1960:2/2"), facets(bookFacetService.facets().getDecades()));
+	}
+}
@@ -0,0 +1,177 @@
+package ru.batorov.library.unit.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookChangedEvent.Type;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.repositories.BookStatsRepository;
+import ru.batorov.library.repositories.BookStatsRepository.PopularBook;
+import ru.batorov.library.services.BookPopularityService;
+
+/**
+ * Book popularity service unit test class. The book_stats table is kept in a
+ * map behind the mocked repository.
+ */
+public class BookPopularityServiceTest {
+	private final BookStatsRepository bookStatsRepository = Mockito.mock(BookStatsRepository.class);
+	private final BookPopularityService bookPopularityService = new BookPopularityService(bookStatsRepository,
+			Mockito.mock(PlatformTransactionManager.class), 2, Duration.ofHours(1));
+	// book id to borrow count
+	private final Map<Integer, Long> stats = new TreeMap<>();
+
+	@BeforeEach
+	public void setUp() {
+		Mockito.when(bookStatsRepository.addBorrows(Mockito.anyInt(), Mockito.anyLong())).thenAnswer(invocation -> {
+			Integer bookId = invocation.getArgument(0);
+			if (!stats.containsKey(bookId))
+				return 0;
+			stats.merge(bookId, invocation.getArgument(1), Long::sum);
+			return 1;
+		});
+		Mockito.doAnswer(invocation -> stats.put(invocation.getArgument(0), invocation.getArgument(1)))
+				.when(bookStatsRepository).insert(Mockito.anyInt(), Mockito.anyLong());
+		Mockito.when(bookStatsRepository.findByBookIds(Mockito.anyCollection())).thenAnswer(invocation -> {
+			Collection<Integer> bookIds = invocation.getArgument(0);
+			return bookIds.stream().filter(stats::containsKey).map(bookId -> row(bookId, stats.get(bookId))).toList();
+		});
+		Mockito.when(bookStatsRepository.findMostBorrowed(Mockito.any(Pageable.class))).thenAnswer(invocation -> {
+			Pageable pageable = invocation.getArgument(0);
+			return stats.entrySet().stream()
+					.sorted(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder())
+							.thenComparing(Map.Entry.comparingByKey()))
+					.limit(pageable.getPageSize()).map(entry -> row(entry.getKey(), entry.getValue())).toList();
+		});
+	}
+
+	private static PopularBook row(Integer id, long borrowCount) {
+		return new PopularBook() {
+			public Integer getId() {
+				return id;
+			}
+
+			public String getTitle() {
+				return "title" + id;
+			}
+
+			public String getAuthor() {
+				return "author" + id;
+			}
+
+			public Integer getReleaseYear() {
+				return 2000;
+			}
+
+			public long getBorrowCount() {
+				return borrowCount;
+			}
+		};
+	}
+
+	private void borrow(int bookId, int times) {
+		for (int i = 0; i < times; i++) {
+			bookPopularityService.onBookChanged(new BookChangedEvent(Type.OWNER_CHANGED,
+					new BookSnapshot(bookId, "title" + bookId, "author" + bookId, 2000, null),
+					new BookSnapshot(bookId, "title" + bookId, "author" + bookId, 2000, 7)));
+			bookPopularityService.onBookChanged(new BookChangedEvent(Type.OWNER_CHANGED,
+					new BookSnapshot(bookId, "title" + bookId, "author" + bookId, 2000, 7),
+					new BookSnapshot(bookId, "title" + bookId, "author" + bookId, 2000, null)));
+		}
+	}
+
+	// id:count of the top
+	private List<String> top() {
+		return bookPopularityService.mostBorrowed().stream().map(book -> book.getId() + ":" + book.getBorrowCount())
+				.toList();
+	}
+
+	/**
+	 * Test that borrows are added to book_stats, returns aren't counted and a
+	 * flush without new borrows doesn't touch the database
+	 */
+	@Test
+	public void flushTest() {
+		stats.put(1, 10L);
+		borrow(1, 2);
+		borrow(2, 1);
+		bookPopularityService.onBookChanged(new BookChangedEvent(Type.UPDATED, new BookSnapshot(1, "title1", "author1",
+				2000, null), new BookSnapshot(1, "Title", "author1", 2000, null)));
+
+		bookPopularityService.flush();
+
+		assertEquals(Map.of(1, 12L, 2, 1L), stats);
+		Mockito.verify(bookStatsRepository).insert(2, 1);
+
+		Mockito.clearInvocations(bookStatsRepository);
+		bookPopularityService.flush();
+		Mockito.verifyNoInteractions(bookStatsRepository);
+	}
+
+	/**
+	 * Test that counters that weren't saved are added to the next flush
+	 */
+	@Test
+	public void failedFlushTest() {
+		borrow(1, 2);
+		Mockito.when(bookStatsRepository.addBorrows(1, 2))
+				.thenThrow(new DataAccessResourceFailureException("database is down"));
+
+		bookPopularityService.flush();
+		assertEquals(Map.of(), stats);
+
+		borrow(1, 1);
+		bookPopularityService.flush();
+		assertEquals(Map.of(1, 3L), stats);
+	}
+
+	/**
+	 * Test that the top is rebuilt from the previous top and the books
+	 * borrowed since
+	 */
+	@Test
+	public void topTest() {
+		borrow(1, 5);
+		borrow(2, 3);
+		borrow(3, 4);
+		bookPopularityService.flush();
+		assertEquals(List.of("1:5", "3:4"), top());
+
+		borrow(2, 3);
+		bookPopularityService.flush();
+		assertEquals(List.of("2:6", "1:5"), top());
+		Mockito.verify(bookStatsRepository, Mockito.never()).findMostBorrowed(Mockito.any(Pageable.class));
+	}
+
+	/**
+	 * Test that the top is read from book_stats when a book of the top is
+	 * deleted
+	 */
+	@Test
+	public void deletedTopBookTest() {
+		stats.put(4, 2L);
+		borrow(1, 5);
+		borrow(3, 4);
+		bookPopularityService.flush();
+		assertEquals(List.of("1:5", "3:4"), top());
+
+		stats.remove(3);
+		borrow(2, 1);
+		bookPopularityService.flush();
+
+		assertEquals(List.of("1:5", "4:2"), top(), "book 4 wasn't borrowed since, it comes from book_stats");
+	}
+}
@@ -0,0 +1,137 @@
+package ru.batorov.library.unit.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import ru.batorov.library.dto.book.BookLoanResultDTO;
+import ru.batorov.library.dto.book.BookLoanResultDTO.Outcome;
+import ru.batorov.library.services.BookService;
+
+/**
+ * Book service concurrency unit test class. Loans run in parallel
+ * transactions against the H2 database.
+ */
+@SpringBootTest
+@TestPropertySource(locations = "/unit/application-test.properties", properties = {
+		"spring.datasource.url=jdbc:h2:mem:concurrencydb;LOCK_TIMEOUT=10000;DB_CLOSE_ON_EXIT=FALSE",
+		"library.search.index-dir=target/concurrency-lucene-index",
+		"library.catalog.snapshot-file=target/concurrency-catalog.snapshot" })
+public class BookServiceConcurrencyTest {
+	private static final int THREADS = 8;
+
+	@Autowired
+	private BookService bookService;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+	private final List<Integer> people = new ArrayList<>();
+
+	@BeforeEach
+	public void setUp() {
+		jdbcTemplate.update("DELETE FROM book");
+		jdbcTemplate.update("DELETE FROM person");
+		for (int i = 0; i < THREADS; i++) {
+			jdbcTemplate.update("INSERT INTO person(username, password, full_name, year_of_birth) VALUES (?, ?, ?, ?)",
+					"reader" + i, "password", "Reader " + i, 1990);
+			people.add(jdbcTemplate.queryForObject("SELECT id FROM person WHERE username = ?", Integer.class,
+					"reader" + i));
+		}
+		jdbcTemplate.update("INSERT INTO book(id, title, author, release_year) VALUES (1, 'Dune', 'Frank Herbert', 1965)");
+	}
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	// runs a call for every person at the same time and returns the results in the order of people
+	private <T> List<T> concurrently(PersonCall<T> call) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<T>> futures = new ArrayList<>();
+		for (Integer personId : people)
+			futures.add(executor.submit((Callable<T>) () -> {
+				start.await();
+				return call.call(personId);
+			}));
+		start.countDown();
+		List<T> results = new ArrayList<>();
+		for (Future<T> future : futures)
+			results.add(future.get(30, TimeUnit.SECONDS));
+		return results;
+	}
+
+	private interface PersonCall<T> {
+		T call(Integer personId) throws Exception;
+	}
+
+	private Integer ownerOf(int bookId) {
+		return jdbcTemplate.queryForObject("SELECT person_id FROM book WHERE id = ?", Integer.class, bookId);
+	}
+
+	/**
+	 * Test that of concurrent checkouts of the same book exactly one succeeds
+	 * and the book goes to that person
+	 */
+	@Test
+	public void checkoutTest() throws Exception {
+		List<Boolean> results = concurrently(personId -> bookService.checkout(1, personId));
+
+		assertEquals(1, results.stream().filter(taken -> taken).count(), "only one checkout should succeed");
+		assertEquals(people.get(results.indexOf(true)), ownerOf(1));
+	}
+
+	/**
+	 * Test that of concurrent bulk checkouts every book is given once, even
+	 * when carts list the books in different orders, and that concurrent bulk
+	 * returns free every book once
+	 */
+	@Test
+	public void checkoutAllTest() throws Exception {
+		jdbcTemplate.update("INSERT INTO book(id, title, author, release_year) VALUES (2, 'Solaris', 'Stanislaw Lem', 1961)");
+		jdbcTemplate.update("INSERT INTO book(id, title, author, release_year) VALUES (3, 'Ubik', 'Philip K. Dick', 1969)");
+
+		List<List<BookLoanResultDTO>> taken = concurrently(personId -> bookService
+				.checkoutAll(personId % 2 == 0 ? List.of(1, 2, 3) : List.of(3, 2, 1), personId));
+
+		for (int bookId = 1; bookId <= 3; bookId++) {
+			List<Outcome> outcomes = outcomes(taken, bookId);
+			assertEquals(1, Collections.frequency(outcomes, Outcome.DONE), "book " + bookId + " should be given once");
+			assertEquals(THREADS - 1, Collections.frequency(outcomes, Outcome.TAKEN));
+			assertEquals(people.get(outcomes.indexOf(Outcome.DONE)), ownerOf(bookId));
+		}
+
+		List<List<BookLoanResultDTO>> returned = concurrently(personId -> bookService.releaseAll(List.of(1, 2, 3), null));
+
+		for (int bookId = 1; bookId <= 3; bookId++) {
+			List<Outcome> outcomes = outcomes(returned, bookId);
+			assertEquals(1, Collections.frequency(outcomes, Outcome.DONE), "book " + bookId + " should be returned once");
+			assertEquals(THREADS - 1, Collections.frequency(outcomes, Outcome.NOT_OWNER));
+			assertNull(ownerOf(bookId));
+		}
+	}
+
+	// outcome of the book in every result list
+	private static List<Outcome> outcomes(List<List<BookLoanResultDTO>> results, int bookId) {
+		return results.stream().map(result -> result.stream().filter(loan -> loan.getId() == bookId)
+				.findFirst().orElseThrow().getOutcome()).toList();
+	}
+}
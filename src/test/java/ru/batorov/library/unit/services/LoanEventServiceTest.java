@@ -0,0 +1,135 @@
+package ru.batorov.library.unit.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookChangedEvent.Type;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.models.LoanEvent;
+import ru.batorov.library.repositories.LoanEventRepository;
+import ru.batorov.library.services.LoanEventService;
+
+/**
+ * Loan event service unit test class
+ */
+public class LoanEventServiceTest {
+	private static final LocalDateTime TAKEN_AT = LocalDateTime.of(2023, 7, 1, 12, 0);
+	private static final LocalDateTime RETURNED_AT = LocalDateTime.of(2023, 7, 15, 18, 30);
+
+	private final LoanEventRepository loanEventRepository = Mockito.mock(LoanEventRepository.class);
+	// the service clears the batch after the insert, so events are copied
+	private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+	private final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+	private final Answer<Void> write = invocation -> {
+		List<LoanEvent> batch = invocation.getArgument(0);
+		batches.add(batch.size());
+		batch.forEach(event -> written.add(event.getBookId() + " " + event.getKind() + " " + event.getPersonId()
+				+ " " + event.getHappenedAt()));
+		return null;
+	};
+
+	private static LoanEventService service(LoanEventRepository repository, int queueCapacity,
+			Duration shutdownTimeout) {
+		return new LoanEventService(repository, queueCapacity, 2, Duration.ofMillis(10), shutdownTimeout);
+	}
+
+	private static BookChangedEvent ownerChanged(int bookId, Integer before, Integer after, LocalDateTime changedAt) {
+		return new BookChangedEvent(Type.OWNER_CHANGED, new BookSnapshot(bookId, "Dune", "Frank Herbert", 1965, before),
+				new BookSnapshot(bookId, "Dune", "Frank Herbert", 1965, after), changedAt);
+	}
+
+	/**
+	 * Test that takes and returns are written in batches with the time of the
+	 * change and changes without a new owner are skipped
+	 */
+	@Test
+	public void writeTest() throws InterruptedException {
+		Mockito.doAnswer(write).when(loanEventRepository).insertAll(Mockito.anyList());
+		LoanEventService service = service(loanEventRepository, 100, Duration.ofSeconds(10));
+
+		service.onBookChanged(ownerChanged(1, null, 7, TAKEN_AT));
+		service.onBookChanged(ownerChanged(1, 7, 8, RETURNED_AT));
+		service.onBookChanged(ownerChanged(2, 8, null, RETURNED_AT));
+		service.onBookChanged(new BookChangedEvent(Type.UPDATED, new BookSnapshot(3, "Ubik", "Dick", 1969, 7),
+				new BookSnapshot(3, "Ubik", "Philip K. Dick", 1969, 7)));
+		service.start();
+		service.close();
+
+		assertEquals(List.of("1 TAKEN 7 " + TAKEN_AT, "1 RETURNED 7 " + RETURNED_AT, "1 TAKEN 8 " + RETURNED_AT,
+				"2 RETURNED 8 " + RETURNED_AT), written);
+		assertTrue(batches.stream().allMatch(size -> size <= 2), "batches should not exceed the batch size");
+		assertEquals(0, service.lost());
+	}
+
+	/**
+	 * Test that events that don't fit into the full queue are counted as lost
+	 * without waiting
+	 */
+	@Test
+	public void fullQueueTest() throws InterruptedException {
+		Mockito.doAnswer(write).when(loanEventRepository).insertAll(Mockito.anyList());
+		LoanEventService service = service(loanEventRepository, 2, Duration.ofSeconds(10));
+
+		long start = System.nanoTime();
+		for (int bookId = 1; bookId <= 5; bookId++)
+			service.onBookChanged(ownerChanged(bookId, null, 7, TAKEN_AT));
+		long elapsed = System.nanoTime() - start;
+		service.start();
+		service.close();
+
+		assertEquals(3, service.lost());
+		assertTrue(elapsed < Duration.ofMillis(500).toNanos(), "the full queue should not hold the caller");
+		assertEquals(List.of("1 TAKEN 7 " + TAKEN_AT, "2 TAKEN 7 " + TAKEN_AT), written);
+	}
+
+	/**
+	 * Test that failed inserts on shutdown are retried until they are written
+	 */
+	@Test
+	public void shutdownRetryTest() throws InterruptedException {
+		Mockito.doThrow(new DataAccessResourceFailureException("database is down"))
+				.doThrow(new DataAccessResourceFailureException("database is down"))
+				.doAnswer(write).when(loanEventRepository).insertAll(Mockito.anyList());
+		LoanEventService service = service(loanEventRepository, 100, Duration.ofSeconds(10));
+
+		service.onBookChanged(ownerChanged(1, null, 7, TAKEN_AT));
+		service.start();
+		service.close();
+
+		assertEquals(List.of("1 TAKEN 7 " + TAKEN_AT), written);
+		assertEquals(0, service.lost());
+		Mockito.verify(loanEventRepository, Mockito.times(3)).insertAll(Mockito.anyList());
+	}
+
+	/**
+	 * Test that retries on shutdown stop at the shutdown timeout and the
+	 * events are counted as lost
+	 */
+	@Test
+	public void shutdownTimeoutTest() throws InterruptedException {
+		Mockito.doThrow(new DataAccessResourceFailureException("database is down")).when(loanEventRepository)
+				.insertAll(Mockito.anyList());
+		LoanEventService service = service(loanEventRepository, 100, Duration.ofMillis(200));
+
+		service.onBookChanged(ownerChanged(1, 7, 8, TAKEN_AT));
+		service.start();
+		long start = System.nanoTime();
+		service.close();
+
+		assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos(), "retries should stop at the timeout");
+		assertEquals(2, service.lost());
+		Mockito.verify(loanEventRepository, Mockito.atLeast(2)).insertAll(Mockito.anyList());
+	}
+}
@@ -0,0 +1,132 @@
+package ru.batorov.library.unit.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
+
+import ru.batorov.library.events.BookChangedEvent;
+import ru.batorov.library.events.BookSnapshot;
+import ru.batorov.library.services.CatalogService;
+import ru.batorov.library.services.PageCacheService;
+import ru.batorov.library.util.ResourceVersion;
+
+/**
+ * Page cache service unit test class
+ */
+public class PageCacheServiceTest {
+	private final CatalogService catalogService = Mockito.mock(CatalogService.class);
+	private final ThymeleafViewResolver viewResolver = Mockito.mock(ThymeleafViewResolver.class);
+	private final PageCacheService pageCacheService = new PageCacheService(catalogService, viewResolver, 1024);
+	private final AtomicInteger renders = new AtomicInteger();
+	private int status = 200;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		Mockito.when(catalogService.version()).thenReturn(ResourceVersion.of(0, 1));
+		// renders the page number given in the model
+		View view = (model, request, response) -> {
+			renders.incrementAndGet();
+			response.setStatus(status);
+			response.setContentType("text/html;charset=UTF-8");
+			response.getWriter().write("page " + model.get("page"));
+			response.getWriter().flush();
+		};
+		Mockito.when(viewResolver.resolveViewName("books/all", Locale.ROOT)).thenReturn(view);
+	}
+
+	// renders the view like the controller does, cached page first
+	private MockHttpServletResponse get(Object key, int page, MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		View view = pageCacheService.cached(key);
+		if (view == null)
+			view = pageCacheService.render("books/all", key, Locale.ROOT);
+		view.render(Map.of("page", page), request, response);
+		return response;
+	}
+
+	/**
+	 * Test that pages of signed in users aren't cached and keys change with
+	 * the catalog version
+	 */
+	@Test
+	public void keyTest() {
+		Object key = pageCacheService.key("books/all", null, 1, null);
+		assertNotNull(key);
+		AnonymousAuthenticationToken anonymous = new AnonymousAuthenticationToken("key", "anonymous",
+				List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS")));
+		assertEquals(key, pageCacheService.key("books/all", anonymous, 1, null));
+		assertNotEquals(key, pageCacheService.key("books/all", null, 2, null));
+		assertNotEquals(key, pageCacheService.key("books/show", null, 1, null));
+		assertNull(pageCacheService.key("books/all", new UsernamePasswordAuthenticationToken("user", "password",
+				List.of(new SimpleGrantedAuthority("ROLE_USER"))), 1, null));
+
+		Mockito.when(catalogService.version()).thenReturn(ResourceVersion.of(0, 2));
+		assertNotEquals(key, pageCacheService.key("books/all", null, 1, null));
+	}
+
+	/**
+	 * Test that a rendered page is served from the cache
+	 */
+	@Test
+	public void cacheTest() throws Exception {
+		Object key = pageCacheService.key("books/all", null, 1);
+
+		MockHttpServletResponse first = get(key, 1, new MockHttpServletRequest());
+		MockHttpServletResponse second = get(key, 2, new MockHttpServletRequest());
+
+		assertEquals("page 1", first.getContentAsString());
+		assertEquals("page 1", second.getContentAsString(), "the cached page should be served");
+		assertEquals("text/html;charset=UTF-8", second.getContentType());
+		assertEquals(6, second.getContentLength());
+		assertEquals(1, renders.get());
+
+		pageCacheService.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED,
+				new BookSnapshot(1, "Dune", "Frank Herbert", 1965, null), null));
+		assertEquals("page 3", get(key, 3, new MockHttpServletRequest()).getContentAsString());
+		assertEquals(2, renders.get());
+	}
+
+	/**
+	 * Test that pages without a key, failed pages and pages with the session
+	 * id in links aren't cached
+	 */
+	@Test
+	public void notCachedTest() throws Exception {
+		View view = pageCacheService.render("books/all", null, Locale.ROOT);
+		assertSame(viewResolver.resolveViewName("books/all", Locale.ROOT), view);
+		assertNull(pageCacheService.cached(null));
+
+		Object key = pageCacheService.key("books/all", null, 1);
+		status = 500;
+		get(key, 1, new MockHttpServletRequest());
+		assertNull(pageCacheService.cached(key));
+
+		status = 200;
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.getSession();
+		request.setRequestedSessionIdFromCookie(false);
+		get(key, 1, request);
+		assertNull(pageCacheService.cached(key));
+
+		get(key, 1, new MockHttpServletRequest());
+		assertNotNull(pageCacheService.cached(key));
+	}
+}
@@ -0,0 +1,178 @@
+package ru.batorov.library.unit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ru.batorov.library.util.SingleFlight;
+
+/**
+ * Single flight unit test class
+ */
+public class SingleFlightTest {
+	private final SingleFlight flights = new SingleFlight();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final CountDownLatch loading = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@AfterEach
+	public void shutdown() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	// a loader that runs until released
+	private <T> Supplier<T> blocking(Supplier<T> result) {
+		return () -> {
+			loads.incrementAndGet();
+			loading.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return result.get();
+		};
+	}
+
+	// starts a load in another thread and returns once it waits for the running one
+	private <T> Future<T> waiting(Object key) throws InterruptedException {
+		return waiting(() -> flights.<T>load(key, () -> {
+			loads.incrementAndGet();
+			return null;
+		}));
+	}
+
+	// starts the call in another thread and returns once it waits
+	private <T> Future<T> waiting(Supplier<T> call) throws InterruptedException {
+		AtomicReference<Thread> thread = new AtomicReference<>();
+		Future<T> future = executor.submit(() -> {
+			thread.set(Thread.currentThread());
+			return call.get();
+		});
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+			if (System.nanoTime() > deadline)
+				throw new AssertionError("the load didn't wait for the running one");
+			Thread.sleep(1);
+		}
+		return future;
+	}
+
+	/**
+	 * Test that callers that come during a load get its result
+	 */
+	@Test
+	public void sharingTest() throws Exception {
+		Object result = new Object();
+		Future<Object> first = executor.submit(() -> flights.load("key", blocking(() -> result)));
+		loading.await();
+		Future<Object> second = waiting("key");
+		Future<Object> third = waiting("key");
+
+		release.countDown();
+
+		assertSame(result, first.get(10, TimeUnit.SECONDS));
+		assertSame(result, second.get(10, TimeUnit.SECONDS));
+		assertSame(result, third.get(10, TimeUnit.SECONDS));
+		assertEquals(1, loads.get());
+
+		assertEquals("next", flights.load("key", () -> "next"), "finished loads should not be kept");
+	}
+
+	/**
+	 * Test that loads of different keys don't wait for each other
+	 */
+	@Test
+	public void differentKeysTest() throws Exception {
+		Future<Object> first = executor.submit(() -> flights.load("key", blocking(() -> "first")));
+		loading.await();
+
+		assertEquals("other", flights.load("other", () -> "other"));
+		release.countDown();
+		assertEquals("first", first.get(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test that waiting callers get the exception of the load
+	 */
+	@Test
+	public void exceptionTest() throws Exception {
+		IllegalStateException exception = new IllegalStateException("failed");
+		Future<Object> first = executor.submit(() -> flights.load("key", blocking(() -> {
+			throw exception;
+		})));
+		loading.await();
+		Future<Object> second = waiting("key");
+
+		release.countDown();
+
+		for (Future<Object> future : List.of(first, second)) {
+			ExecutionException thrown = assertThrows(ExecutionException.class,
+					() -> future.get(10, TimeUnit.SECONDS));
+			assertSame(exception, thrown.getCause());
+		}
+		assertEquals(1, loads.get());
+		assertEquals("next", flights.load("key", () -> "next"), "failed loads should not be kept");
+	}
+
+	/**
+	 * Test that callers that come after forget run their own load
+	 */
+	@Test
+	public void forgetTest() throws Exception {
+		Future<Object> first = executor.submit(() -> flights.load("key", blocking(() -> "old")));
+		loading.await();
+
+		flights.forget();
+		assertEquals("new", flights.load("key", () -> "new"));
+		release.countDown();
+		assertEquals("old", first.get(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test that loads in read-write transactions are never shared and loads in
+	 * read-only transactions are
+	 */
+	@Test
+	public void transactionTest() throws Exception {
+		Future<Object> first = executor.submit(() -> flights.load("key", blocking(() -> "shared")));
+		loading.await();
+
+		Future<Object> readWrite = executor
+				.submit(() -> inTransaction(false, () -> flights.load("key", () -> "own")));
+		assertEquals("own", readWrite.get(10, TimeUnit.SECONDS));
+
+		Future<Object> readOnly = waiting(() -> inTransaction(true, () -> flights.load("key", () -> "own")));
+		release.countDown();
+		assertEquals("shared", first.get(10, TimeUnit.SECONDS));
+		assertEquals("shared", readOnly.get(10, TimeUnit.SECONDS));
+	}
+
+	private static <T> T inTransaction(boolean readOnly, Supplier<T> action) {
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+		try {
+			return action.get();
+		} finally {
+			TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+			TransactionSynchronizationManager.setActualTransactionActive(false);
+		}
+	}
+}
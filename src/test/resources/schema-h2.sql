@@ -17,8 +17,9 @@ CREATE TABLE if NOT EXISTS person_role(
     role_id int, FOREIGN KEY(role_id) REFERENCES role(id) ON DELETE CASCADE,
     PRIMARY KEY(person_id, role_id)
 );;
+CREATE SEQUENCE IF NOT EXISTS book_seq INCREMENT BY 50;;
 create table IF NOT EXISTS book(
-    id int GENERATED always AS IDENTITY, PRIMARY KEY(id),
+    id int DEFAULT NEXT VALUE FOR book_seq, PRIMARY KEY(id),
     person_id int, FOREIGN KEY(person_id) REFERENCES person(id) on DELETE set null,
     title varchar(100) not null,
     author varchar(100) not null,
@@ -26,4 +27,26 @@ create table IF NOT EXISTS book(
 	take_time timestamp DEFAULT CURRENT_TIMESTAMP DEFAULT ON NULL,
     created_at timestamp not null DEFAULT CURRENT_TIMESTAMP DEFAULT ON NULL,
     updated_at timestamp not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP	DEFAULT ON NULL
-);;
\ No newline at end of file
+);;
+CREATE INDEX IF NOT EXISTS book_release_year_id_idx ON book(release_year, id);;
+CREATE INDEX IF NOT EXISTS book_author_release_year_id_idx ON book(author, release_year, id);;
+CREATE INDEX IF NOT EXISTS book_person_id_release_year_id_idx ON book(person_id, release_year, id);;
+CREATE INDEX IF NOT EXISTS book_updated_at_id_idx ON book(updated_at, id);;
+create table IF NOT EXISTS book_tombstone(
+    book_id int, PRIMARY KEY(book_id),
+    deleted_at timestamp not null DEFAULT CURRENT_TIMESTAMP
+);;
+CREATE INDEX IF NOT EXISTS book_tombstone_deleted_at_book_id_idx ON book_tombstone(deleted_at, book_id);;
+create table IF NOT EXISTS loan_event(
+    id bigint GENERATED always AS IDENTITY, PRIMARY KEY(id),
+    book_id int not null,
+    person_id int not null,
+    kind varchar(10) not null,
+    happened_at timestamp not null
+);;
+CREATE INDEX IF NOT EXISTS loan_event_book_id_happened_at_idx ON loan_event(book_id, happened_at);;
+create table IF NOT EXISTS book_stats(
+    book_id int, PRIMARY KEY(book_id),
+    borrow_count bigint not null
+);;
+CREATE INDEX IF NOT EXISTS book_stats_borrow_count_idx ON book_stats(borrow_count);;